@@ -0,0 +1,88 @@
+package com.rbkmoney.benchmark;
+
+import org.jooq.Query;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.rbkmoney.benchmark.BenchmarkTable.PAYMENT;
+
+/**
+ * Renders and groups a list of queries of a few distinct shapes; the template does not touch the database,
+ * so the numbers reflect the work done before the driver is called.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchGroupingBenchmark {
+
+    @Param({"1000"})
+    private int queries;
+
+    @Param({"4"})
+    private int shapes;
+
+    private BenchmarkDao dao;
+
+    private NamedParameterJdbcTemplate template;
+
+    private List<Query> batch;
+
+    @Setup
+    public void setUp() throws SQLException {
+        DataSource dataSource = BenchmarkDatabase.create("batch_grouping", 0);
+        dao = new BenchmarkDao(dataSource);
+        template = new NamedParameterJdbcTemplate(dataSource) {
+            @Override
+            public int[] batchUpdate(String sql, SqlParameterSource[] batchArgs) {
+                int[] rowsAffected = new int[batchArgs.length];
+                Arrays.fill(rowsAffected, 1);
+                return rowsAffected;
+            }
+        };
+        batch = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            long id = i;
+            switch (i % shapes) {
+                case 0:
+                    batch.add(dao.getDslContext().update(PAYMENT)
+                            .set(PAYMENT.STATUS, "captured")
+                            .where(PAYMENT.ID.eq(id)));
+                    break;
+                case 1:
+                    batch.add(dao.getDslContext().update(PAYMENT)
+                            .set(PAYMENT.AMOUNT, id)
+                            .where(PAYMENT.ID.eq(id)));
+                    break;
+                case 2:
+                    batch.add(dao.getDslContext().deleteFrom(PAYMENT)
+                            .where(PAYMENT.ID.eq(id)));
+                    break;
+                default:
+                    batch.add(dao.getDslContext().insertInto(PAYMENT)
+                            .set(PAYMENT.ID, id)
+                            .set(PAYMENT.INVOICE_ID, "invoice-" + id)
+                            .set(PAYMENT.PAYMENT_ID, "1")
+                            .set(PAYMENT.AMOUNT, id)
+                            .set(PAYMENT.CURRENCY_CODE, "RUB")
+                            .set(PAYMENT.STATUS, "pending"));
+                    break;
+            }
+        }
+    }
+
+    @Benchmark
+    public long batchExecute() {
+        return dao.batchExecute(batch, -1, template);
+    }
+}
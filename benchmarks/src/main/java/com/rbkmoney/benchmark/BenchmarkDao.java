@@ -0,0 +1,26 @@
+package com.rbkmoney.benchmark;
+
+import com.rbkmoney.dao.impl.AbstractGenericDao;
+import org.jooq.DSLContext;
+import org.jooq.Param;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+public class BenchmarkDao extends AbstractGenericDao {
+
+    public BenchmarkDao(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    public DSLContext getDslContext() {
+        return super.getDslContext();
+    }
+
+    @Override
+    public SqlParameterSource toSqlParameterSource(Map<String, Param<?>> params) {
+        return super.toSqlParameterSource(params);
+    }
+}
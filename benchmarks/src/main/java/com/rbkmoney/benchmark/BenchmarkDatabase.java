@@ -0,0 +1,53 @@
+package com.rbkmoney.benchmark;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+public final class BenchmarkDatabase {
+
+    private BenchmarkDatabase() {
+    }
+
+    public static DataSource create(String name, int rows) throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("drop table if exists payment");
+                statement.execute("create table payment (" +
+                        "id bigint primary key, " +
+                        "invoice_id varchar not null, " +
+                        "payment_id varchar not null, " +
+                        "amount bigint not null, " +
+                        "currency_code varchar not null, " +
+                        "status varchar not null, " +
+                        "created_at timestamp not null, " +
+                        "payload bytea)");
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "insert into payment values (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                LocalDateTime createdAt = LocalDateTime.of(2020, 1, 1, 0, 0);
+                for (int i = 0; i < rows; i++) {
+                    statement.setLong(1, i);
+                    statement.setString(2, "invoice-" + i);
+                    statement.setString(3, String.valueOf(i % 3));
+                    statement.setLong(4, 1000L * i);
+                    statement.setString(5, "RUB");
+                    statement.setString(6, "captured");
+                    statement.setTimestamp(7, Timestamp.valueOf(createdAt.plusSeconds(i)));
+                    statement.setBytes(8, new byte[64]);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+        return dataSource;
+    }
+}
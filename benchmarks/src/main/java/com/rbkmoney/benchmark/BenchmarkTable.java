@@ -0,0 +1,119 @@
+package com.rbkmoney.benchmark;
+
+import org.jooq.Record;
+import org.jooq.TableField;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.jooq.impl.TableImpl;
+
+import java.time.LocalDateTime;
+
+public class BenchmarkTable extends TableImpl<Record> {
+
+    public static final BenchmarkTable PAYMENT = new BenchmarkTable();
+
+    public final TableField<Record, Long> ID = createField(DSL.name("id"), SQLDataType.BIGINT, this);
+
+    public final TableField<Record, String> INVOICE_ID = createField(DSL.name("invoice_id"), SQLDataType.VARCHAR, this);
+
+    public final TableField<Record, String> PAYMENT_ID = createField(DSL.name("payment_id"), SQLDataType.VARCHAR, this);
+
+    public final TableField<Record, Long> AMOUNT = createField(DSL.name("amount"), SQLDataType.BIGINT, this);
+
+    public final TableField<Record, String> CURRENCY_CODE =
+            createField(DSL.name("currency_code"), SQLDataType.VARCHAR, this);
+
+    public final TableField<Record, String> STATUS = createField(DSL.name("status"), SQLDataType.VARCHAR, this);
+
+    public final TableField<Record, LocalDateTime> CREATED_AT =
+            createField(DSL.name("created_at"), SQLDataType.LOCALDATETIME, this);
+
+    public final TableField<Record, byte[]> PAYLOAD = createField(DSL.name("payload"), SQLDataType.BLOB, this);
+
+    private BenchmarkTable() {
+        super(DSL.name("payment"));
+    }
+
+    public static class Payment {
+
+        private Long id;
+
+        private String invoiceId;
+
+        private String paymentId;
+
+        private Long amount;
+
+        private String currencyCode;
+
+        private String status;
+
+        private LocalDateTime createdAt;
+
+        private byte[] payload;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getInvoiceId() {
+            return invoiceId;
+        }
+
+        public void setInvoiceId(String invoiceId) {
+            this.invoiceId = invoiceId;
+        }
+
+        public String getPaymentId() {
+            return paymentId;
+        }
+
+        public void setPaymentId(String paymentId) {
+            this.paymentId = paymentId;
+        }
+
+        public Long getAmount() {
+            return amount;
+        }
+
+        public void setAmount(Long amount) {
+            this.amount = amount;
+        }
+
+        public String getCurrencyCode() {
+            return currencyCode;
+        }
+
+        public void setCurrencyCode(String currencyCode) {
+            this.currencyCode = currencyCode;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+
+        public void setCreatedAt(LocalDateTime createdAt) {
+            this.createdAt = createdAt;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        public void setPayload(byte[] payload) {
+            this.payload = payload;
+        }
+    }
+}
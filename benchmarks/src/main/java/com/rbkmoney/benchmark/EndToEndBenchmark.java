@@ -0,0 +1,87 @@
+package com.rbkmoney.benchmark;
+
+import com.rbkmoney.benchmark.BenchmarkTable.Payment;
+import com.rbkmoney.mapper.RecordRowMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.rbkmoney.benchmark.BenchmarkTable.PAYMENT;
+
+/**
+ * Goes through the whole dao path against a pooled in-memory H2 database running in PostgreSQL mode.
+ * Absolute numbers are not comparable with a real server, but the relative cost of rendering,
+ * parameter conversion and mapping is.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Param({"10000"})
+    private int rows;
+
+    @Param({"100"})
+    private int pageSize;
+
+    private HikariDataSource dataSource;
+
+    private BenchmarkDao dao;
+
+    private RowMapper<Payment> rowMapper;
+
+    @Setup
+    public void setUp() throws SQLException {
+        dataSource = new HikariDataSource();
+        dataSource.setDataSource(BenchmarkDatabase.create("end_to_end", rows));
+        dao = new BenchmarkDao(dataSource);
+        rowMapper = new RecordRowMapper<>(PAYMENT, Payment.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Payment fetchOne() {
+        return dao.fetchOne(
+                dao.getDslContext().selectFrom(PAYMENT).where(PAYMENT.ID.eq(nextId())),
+                rowMapper
+        );
+    }
+
+    @Benchmark
+    public List<Payment> fetchPage() {
+        long from = ThreadLocalRandom.current().nextLong(rows - pageSize);
+        return dao.fetch(
+                dao.getDslContext().selectFrom(PAYMENT)
+                        .where(PAYMENT.ID.ge(from))
+                        .orderBy(PAYMENT.ID)
+                        .limit(pageSize),
+                rowMapper
+        );
+    }
+
+    @Benchmark
+    public int execute() {
+        return dao.execute(
+                dao.getDslContext().update(PAYMENT)
+                        .set(PAYMENT.STATUS, "refunded")
+                        .set(PAYMENT.AMOUNT, PAYMENT.AMOUNT.plus(1))
+                        .where(PAYMENT.ID.eq(nextId()))
+        );
+    }
+
+    private long nextId() {
+        return ThreadLocalRandom.current().nextLong(rows);
+    }
+}
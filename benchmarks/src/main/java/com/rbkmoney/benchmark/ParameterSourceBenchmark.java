@@ -0,0 +1,49 @@
+package com.rbkmoney.benchmark;
+
+import org.jooq.Param;
+import org.jooq.Query;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.rbkmoney.benchmark.BenchmarkTable.PAYMENT;
+
+/**
+ * Converts the params of an update touching every column type of the payment table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParameterSourceBenchmark {
+
+    private BenchmarkDao dao;
+
+    private Map<String, Param<?>> params;
+
+    @Setup
+    public void setUp() throws SQLException {
+        dao = new BenchmarkDao(BenchmarkDatabase.create("parameter_source", 0));
+        Query query = dao.getDslContext().update(PAYMENT)
+                .set(PAYMENT.INVOICE_ID, "invoice")
+                .set(PAYMENT.PAYMENT_ID, (String) null)
+                .set(PAYMENT.AMOUNT, 1000L)
+                .set(PAYMENT.CURRENCY_CODE, "RUB")
+                .set(PAYMENT.STATUS, "captured\u0000")
+                .set(PAYMENT.CREATED_AT, LocalDateTime.of(2020, 1, 1, 0, 0))
+                .set(PAYMENT.PAYLOAD, new byte[64])
+                .where(PAYMENT.ID.eq(1L));
+        params = query.getParams();
+    }
+
+    @Benchmark
+    public SqlParameterSource toSqlParameterSource() {
+        return dao.toSqlParameterSource(params);
+    }
+}
@@ -0,0 +1,82 @@
+package com.rbkmoney.benchmark;
+
+import com.rbkmoney.benchmark.BenchmarkTable.Payment;
+import com.rbkmoney.mapper.PojoRowMapper;
+import com.rbkmoney.mapper.RecordRowMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import static com.rbkmoney.benchmark.BenchmarkTable.PAYMENT;
+
+/**
+ * Maps a scrollable in-memory result set, so the numbers reflect mapping cost only.
+ * The narrow shape selects two columns of the eight the table and the pojo have.
+ * Run with {@code -prof gc} to compare allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMapperBenchmark {
+
+    @Param({"1000"})
+    private int rows;
+
+    @Param({"wide", "narrow"})
+    private String shape;
+
+    private Connection connection;
+
+    private Statement statement;
+
+    private ResultSet resultSet;
+
+    private RowMapper<Payment> recordRowMapper;
+
+    private RowMapper<Payment> pojoRowMapper;
+
+    @Setup
+    public void setUp() throws SQLException {
+        connection = BenchmarkDatabase.create("row_mapper", rows).getConnection();
+        statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        resultSet = statement.executeQuery("wide".equals(shape)
+                ? "select * from payment"
+                : "select id, amount from payment");
+        recordRowMapper = new RecordRowMapper<>(PAYMENT, Payment.class);
+        pojoRowMapper = new PojoRowMapper<>(PAYMENT, Payment.class);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        resultSet.close();
+        statement.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public void recordRowMapper(Blackhole blackhole) throws SQLException {
+        mapAll(recordRowMapper, blackhole);
+    }
+
+    @Benchmark
+    public void pojoRowMapper(Blackhole blackhole) throws SQLException {
+        mapAll(pojoRowMapper, blackhole);
+    }
+
+    private void mapAll(RowMapper<Payment> rowMapper, Blackhole blackhole) throws SQLException {
+        resultSet.beforeFirst();
+        int rowNum = 0;
+        while (resultSet.next()) {
+            blackhole.consume(rowMapper.mapRow(resultSet, rowNum++));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.rbkmoney.dao;
+
+import org.jooq.Query;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncGenericDao {
+
+    <T> CompletableFuture<T> fetchOneAsync(Query query, Class<T> type);
+
+    <T> CompletableFuture<T> fetchOneAsync(Query query, RowMapper<T> rowMapper);
+
+    <T> CompletableFuture<T> fetchOneAsync(String namedSql,
+                                           SqlParameterSource parameterSource,
+                                           RowMapper<T> rowMapper);
+
+    <T> CompletableFuture<List<T>> fetchAsync(Query query, RowMapper<T> rowMapper);
+
+    <T> CompletableFuture<List<T>> fetchAsync(String namedSql,
+                                              SqlParameterSource parameterSource,
+                                              RowMapper<T> rowMapper);
+
+    CompletableFuture<Integer> executeAsync(Query query);
+
+    CompletableFuture<Integer> executeAsync(Query query, int expectedRowsAffected);
+
+    CompletableFuture<Integer> executeAsync(String namedSql, SqlParameterSource parameterSource);
+
+    CompletableFuture<Integer> executeAsync(String namedSql,
+                                            SqlParameterSource parameterSource,
+                                            int expectedRowsAffected);
+
+    CompletableFuture<Long> batchExecuteAsync(List<Query> queries);
+
+    CompletableFuture<Long> batchExecuteAsync(List<Query> queries, int expectedRowsPerQueryAffected);
+
+    CompletableFuture<Long> batchExecuteAsync(String namedSql, List<SqlParameterSource> parameterSources);
+
+    CompletableFuture<Long> batchExecuteAsync(String namedSql,
+                                              List<SqlParameterSource> parameterSources,
+                                              int expectedRowsPerQueryAffected);
+}
@@ -0,0 +1,11 @@
+package com.rbkmoney.dao;
+
+public enum ColumnType {
+
+    LONG,
+
+    INT,
+
+    DOUBLE
+
+}
@@ -0,0 +1,71 @@
+package com.rbkmoney.dao;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * Deadline of the current thread for {@link GenericDao} calls. Statements are not started once it has passed and
+ * get a JDBC query timeout of the remaining time (rounded up to whole seconds) otherwise; streamed reads get it
+ * when the stream is opened. Nested deadlines can only shorten the enclosing one.
+ */
+public final class DaoDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private DaoDeadline() {
+    }
+
+    public static <T> T call(Instant deadline, Supplier<T> call) {
+        return call(Duration.between(Instant.now(), deadline), call);
+    }
+
+    public static <T> T call(Duration timeout, Supplier<T> call) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Long current = DEADLINE.get();
+        return callUntil(current != null && current - deadline < 0 ? current : deadline, call);
+    }
+
+    public static void run(Duration timeout, Runnable action) {
+        call(timeout, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return nanoseconds left until the deadline, negative once it has passed, or null when no deadline is set
+     */
+    public static Long remainingNanos() {
+        Long deadline = DEADLINE.get();
+        return deadline != null ? deadline - System.nanoTime() : null;
+    }
+
+    /**
+     * Wraps {@code action} to run under the deadline of the calling thread, for handing work over to executors.
+     */
+    public static Runnable propagate(Runnable action) {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return action;
+        }
+        return () -> callUntil(deadline, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private static <T> T callUntil(long deadline, Supplier<T> call) {
+        Long previous = DEADLINE.get();
+        DEADLINE.set(deadline);
+        try {
+            return call.get();
+        } finally {
+            if (previous != null) {
+                DEADLINE.set(previous);
+            } else {
+                DEADLINE.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.rbkmoney.dao;
+
+public class DaoRejectedException extends DaoException {
+
+    public DaoRejectedException(String message) {
+        super(message);
+    }
+
+    public DaoRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
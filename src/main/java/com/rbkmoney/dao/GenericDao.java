@@ -7,6 +7,8 @@ import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.KeyHolder;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface GenericDao {
 
@@ -39,6 +41,120 @@ public interface GenericDao {
                       RowMapper<T> rowMapper,
                       NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException;
 
+    /**
+     * Streams rows with an open cursor. Implementations without one fetch the whole result first.
+     */
+    default <T> Stream<T> fetchStream(Query query, RowMapper<T> rowMapper) throws DaoException {
+        return fetch(query, rowMapper).stream();
+    }
+
+    default <T> Stream<T> fetchStream(String namedSql, SqlParameterSource parameterSource, RowMapper<T> rowMapper)
+            throws DaoException {
+        return fetch(namedSql, parameterSource, rowMapper).stream();
+    }
+
+    default <T> Stream<T> fetchStream(Query query,
+                                      RowMapper<T> rowMapper,
+                                      NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException {
+        return fetch(query, rowMapper, namedParameterJdbcTemplate).stream();
+    }
+
+    default <T> Stream<T> fetchStream(String namedSql,
+                                      SqlParameterSource parameterSource,
+                                      RowMapper<T> rowMapper,
+                                      NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException {
+        return fetch(namedSql, parameterSource, rowMapper, namedParameterJdbcTemplate).stream();
+    }
+
+    /**
+     * Passes rows to the consumer as they are read. Implementations without a cursor fetch the whole result first.
+     *
+     * @return the number of rows consumed
+     */
+    default <T> long fetch(Query query, RowMapper<T> rowMapper, Consumer<? super T> consumer) throws DaoException {
+        List<T> rows = fetch(query, rowMapper);
+        rows.forEach(consumer);
+        return rows.size();
+    }
+
+    default <T> long fetch(String namedSql,
+                           SqlParameterSource parameterSource,
+                           RowMapper<T> rowMapper,
+                           Consumer<? super T> consumer) throws DaoException {
+        List<T> rows = fetch(namedSql, parameterSource, rowMapper);
+        rows.forEach(consumer);
+        return rows.size();
+    }
+
+    default <T> long fetch(Query query,
+                           RowMapper<T> rowMapper,
+                           Consumer<? super T> consumer,
+                           NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException {
+        List<T> rows = fetch(query, rowMapper, namedParameterJdbcTemplate);
+        rows.forEach(consumer);
+        return rows.size();
+    }
+
+    default <T> long fetch(String namedSql,
+                           SqlParameterSource parameterSource,
+                           RowMapper<T> rowMapper,
+                           Consumer<? super T> consumer,
+                           NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException {
+        List<T> rows = fetch(namedSql, parameterSource, rowMapper, namedParameterJdbcTemplate);
+        rows.forEach(consumer);
+        return rows.size();
+    }
+
+    default long[] fetchLongs(Query query) throws DaoException {
+        return fetchColumns(query, ColumnType.LONG).getLongs(0);
+    }
+
+    default long[] fetchLongs(String namedSql, SqlParameterSource parameterSource) throws DaoException {
+        return fetchColumns(namedSql, parameterSource, ColumnType.LONG).getLongs(0);
+    }
+
+    default int[] fetchInts(Query query) throws DaoException {
+        return fetchColumns(query, ColumnType.INT).getInts(0);
+    }
+
+    default int[] fetchInts(String namedSql, SqlParameterSource parameterSource) throws DaoException {
+        return fetchColumns(namedSql, parameterSource, ColumnType.INT).getInts(0);
+    }
+
+    default double[] fetchDoubles(Query query) throws DaoException {
+        return fetchColumns(query, ColumnType.DOUBLE).getDoubles(0);
+    }
+
+    default double[] fetchDoubles(String namedSql, SqlParameterSource parameterSource) throws DaoException {
+        return fetchColumns(namedSql, parameterSource, ColumnType.DOUBLE).getDoubles(0);
+    }
+
+    default PrimitiveColumns fetchColumns(Query query, ColumnType... columnTypes) throws DaoException {
+        throw new UnsupportedOperationException("fetchColumns");
+    }
+
+    default PrimitiveColumns fetchColumns(String namedSql,
+                                          SqlParameterSource parameterSource,
+                                          ColumnType... columnTypes) throws DaoException {
+        throw new UnsupportedOperationException("fetchColumns");
+    }
+
+    default PrimitiveColumns fetchColumns(String namedSql,
+                                          SqlParameterSource parameterSource,
+                                          NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                          ColumnType... columnTypes) throws DaoException {
+        throw new UnsupportedOperationException("fetchColumns");
+    }
+
+    default void fetchMany(MultiFetch multiFetch) throws DaoException {
+        throw new UnsupportedOperationException("fetchMany");
+    }
+
+    default void fetchMany(MultiFetch multiFetch, NamedParameterJdbcTemplate namedParameterJdbcTemplate)
+            throws DaoException {
+        throw new UnsupportedOperationException("fetchMany");
+    }
+
     void executeOne(Query query) throws DaoException;
 
     void executeOne(String namedSql, SqlParameterSource parameterSource) throws DaoException;
@@ -104,4 +220,20 @@ public interface GenericDao {
                       List<SqlParameterSource> parameterSources,
                       int expectedRowsPerQueryAffected,
                       NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException;
+
+    default long batchExecute(List<Query> queries, KeyHolder keyHolder) throws DaoException {
+        throw new UnsupportedOperationException("batchExecute with generated keys");
+    }
+
+    default long batchExecute(String namedSql, List<SqlParameterSource> parameterSources, KeyHolder keyHolder)
+            throws DaoException {
+        throw new UnsupportedOperationException("batchExecute with generated keys");
+    }
+
+    default long batchExecute(String namedSql,
+                              List<SqlParameterSource> parameterSources,
+                              NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                              KeyHolder keyHolder) throws DaoException {
+        throw new UnsupportedOperationException("batchExecute with generated keys");
+    }
 }
@@ -0,0 +1,90 @@
+package com.rbkmoney.dao;
+
+import org.jooq.Query;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Queries executed together by {@link GenericDao#fetchMany(MultiFetch)}. Each added query returns a
+ * {@link Result} that holds its rows once the fetch completes.
+ */
+public class MultiFetch {
+
+    private final List<Query> queries = new ArrayList<>();
+
+    private final List<RowMapper<?>> rowMappers = new ArrayList<>();
+
+    private final List<Result<?>> results = new ArrayList<>();
+
+    public <T> Result<List<T>> fetch(Query query, RowMapper<T> rowMapper) {
+        return add(query, rowMapper, false);
+    }
+
+    /**
+     * Same as {@link GenericDao#fetchOne(Query, RowMapper)}: the result is null when no rows are returned.
+     */
+    public <T> Result<T> fetchOne(Query query, RowMapper<T> rowMapper) {
+        return add(query, rowMapper, true);
+    }
+
+    public List<Query> getQueries() {
+        return Collections.unmodifiableList(queries);
+    }
+
+    public List<RowMapper<?>> getRowMappers() {
+        return Collections.unmodifiableList(rowMappers);
+    }
+
+    /**
+     * Sets the results from the mapped rows of every query, in the order the queries were added.
+     *
+     * @throws org.springframework.dao.IncorrectResultSizeDataAccessException if a {@code fetchOne} query
+     *                                                                        returned more than one row
+     */
+    public void complete(List<List<?>> rows) {
+        if (rows.size() != results.size()) {
+            throw new IllegalArgumentException("Expected rows of " + results.size() + " queries, got " + rows.size());
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            results.get(i).complete(rows.get(i));
+        }
+    }
+
+    private <T, R> Result<R> add(Query query, RowMapper<T> rowMapper, boolean single) {
+        Result<R> result = new Result<>(single);
+        queries.add(query);
+        rowMappers.add(rowMapper);
+        results.add(result);
+        return result;
+    }
+
+    public static class Result<T> {
+
+        private final boolean single;
+
+        private T value;
+
+        private boolean completed;
+
+        private Result(boolean single) {
+            this.single = single;
+        }
+
+        public T get() {
+            if (!completed) {
+                throw new IllegalStateException("Query has not been fetched yet");
+            }
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(List<?> rows) {
+            value = (T) (single ? DataAccessUtils.singleResult(rows) : rows);
+            completed = true;
+        }
+    }
+}
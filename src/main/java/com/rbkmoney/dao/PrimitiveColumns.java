@@ -0,0 +1,68 @@
+package com.rbkmoney.dao;
+
+import java.util.BitSet;
+
+/**
+ * Result of a columnar fetch: one primitive array per selected column, all of {@link #size()} length.
+ * SQL nulls are stored as zero and reported by {@link #isNull(int, int)}.
+ */
+public class PrimitiveColumns {
+
+    private static final BitSet NO_NULLS = new BitSet();
+
+    private final ColumnType[] columnTypes;
+
+    private final Object[] columns;
+
+    private final BitSet[] nulls;
+
+    private final int size;
+
+    public PrimitiveColumns(ColumnType[] columnTypes, Object[] columns, BitSet[] nulls, int size) {
+        this.columnTypes = columnTypes;
+        this.columns = columns;
+        this.nulls = nulls;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public ColumnType getColumnType(int column) {
+        return columnTypes[column];
+    }
+
+    public long[] getLongs(int column) {
+        return (long[]) column(column, ColumnType.LONG);
+    }
+
+    public int[] getInts(int column) {
+        return (int[]) column(column, ColumnType.INT);
+    }
+
+    public double[] getDoubles(int column) {
+        return (double[]) column(column, ColumnType.DOUBLE);
+    }
+
+    public boolean isNull(int column, int row) {
+        BitSet columnNulls = nulls[column];
+        return columnNulls != null && columnNulls.get(row);
+    }
+
+    public BitSet getNulls(int column) {
+        return nulls[column] != null ? (BitSet) nulls[column].clone() : NO_NULLS;
+    }
+
+    private Object column(int column, ColumnType columnType) {
+        if (columnTypes[column] != columnType) {
+            throw new IllegalArgumentException("Column " + column + " is " + columnTypes[column]
+                    + ", not " + columnType);
+        }
+        return columns[column];
+    }
+}
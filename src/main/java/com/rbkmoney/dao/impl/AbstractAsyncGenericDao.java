@@ -0,0 +1,129 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.dao.AsyncGenericDao;
+import com.rbkmoney.dao.DaoDeadline;
+import com.rbkmoney.dao.DaoRejectedException;
+import org.jooq.Query;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Runs {@link AbstractGenericDao} calls on a bounded executor, see {@link DaoExecutors}. When the executor rejects
+ * a call the returned future fails with {@link DaoRejectedException}; calls are never queued beyond the executor's
+ * own capacity. Queries are rendered on the calling thread.
+ */
+public abstract class AbstractAsyncGenericDao extends AbstractGenericDao implements AsyncGenericDao {
+
+    private final Executor executor;
+
+    public AbstractAsyncGenericDao(DataSource dataSource, Executor executor) {
+        super(dataSource);
+        this.executor = executor;
+    }
+
+    protected Executor getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> fetchOneAsync(Query query, Class<T> type) {
+        return fetchOneAsync(query, singleColumnRowMapper(type));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> fetchOneAsync(Query query, RowMapper<T> rowMapper) {
+        RenderedQuery renderedQuery = render(query);
+        return fetchOneAsync(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()), rowMapper);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> fetchOneAsync(String namedSql, SqlParameterSource parameterSource,
+                                                  RowMapper<T> rowMapper) {
+        return submit(() -> fetchOne(namedSql, parameterSource, rowMapper));
+    }
+
+    @Override
+    public <T> CompletableFuture<List<T>> fetchAsync(Query query, RowMapper<T> rowMapper) {
+        RenderedQuery renderedQuery = render(query);
+        return fetchAsync(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()), rowMapper);
+    }
+
+    @Override
+    public <T> CompletableFuture<List<T>> fetchAsync(String namedSql, SqlParameterSource parameterSource,
+                                                     RowMapper<T> rowMapper) {
+        return submit(() -> fetch(namedSql, parameterSource, rowMapper));
+    }
+
+    @Override
+    public CompletableFuture<Integer> executeAsync(Query query) {
+        return executeAsync(query, -1);
+    }
+
+    @Override
+    public CompletableFuture<Integer> executeAsync(Query query, int expectedRowsAffected) {
+        RenderedQuery renderedQuery = render(query);
+        return executeAsync(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()),
+                expectedRowsAffected);
+    }
+
+    @Override
+    public CompletableFuture<Integer> executeAsync(String namedSql, SqlParameterSource parameterSource) {
+        return executeAsync(namedSql, parameterSource, -1);
+    }
+
+    @Override
+    public CompletableFuture<Integer> executeAsync(String namedSql, SqlParameterSource parameterSource,
+                                                   int expectedRowsAffected) {
+        return submit(() -> execute(namedSql, parameterSource, expectedRowsAffected));
+    }
+
+    @Override
+    public CompletableFuture<Long> batchExecuteAsync(List<Query> queries) {
+        return batchExecuteAsync(queries, -1);
+    }
+
+    @Override
+    public CompletableFuture<Long> batchExecuteAsync(List<Query> queries, int expectedRowsPerQueryAffected) {
+        Map<String, List<SqlParameterSource>> parameterSourcesBySql = renderGroupedBySql(queries);
+        return submit(() -> batchExecute(
+                parameterSourcesBySql,
+                expectedRowsPerQueryAffected,
+                getNamedParameterJdbcTemplate()
+        ));
+    }
+
+    @Override
+    public CompletableFuture<Long> batchExecuteAsync(String namedSql, List<SqlParameterSource> parameterSources) {
+        return batchExecuteAsync(namedSql, parameterSources, -1);
+    }
+
+    @Override
+    public CompletableFuture<Long> batchExecuteAsync(String namedSql, List<SqlParameterSource> parameterSources,
+                                                     int expectedRowsPerQueryAffected) {
+        return submit(() -> batchExecute(namedSql, parameterSources, expectedRowsPerQueryAffected));
+    }
+
+    protected <T> CompletableFuture<T> submit(Supplier<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(DaoDeadline.propagate(() -> {
+                try {
+                    future.complete(call.get());
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            }));
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(new DaoRejectedException("Dao executor is saturated", ex));
+        }
+        return future;
+    }
+}
@@ -1,33 +1,125 @@
 package com.rbkmoney.dao.impl;
 
+import com.rbkmoney.dao.ColumnType;
+import com.rbkmoney.dao.DaoDeadline;
 import com.rbkmoney.dao.DaoException;
+import com.rbkmoney.dao.DaoRejectedException;
 import com.rbkmoney.dao.GenericDao;
+import com.rbkmoney.dao.MultiFetch;
+import com.rbkmoney.dao.PrimitiveColumns;
+import com.rbkmoney.dao.metrics.DaoMetrics;
+import com.rbkmoney.dao.metrics.ExplainSink;
+import com.rbkmoney.dao.metrics.StatementIds;
+import com.rbkmoney.dao.metrics.StatementType;
 import org.jooq.*;
-import org.jooq.conf.ParamType;
 import org.jooq.impl.DSL;
 import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultVisitListenerProvider;
+import org.jooq.conf.ParamType;
 import org.springframework.core.NestedRuntimeException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.JdbcUpdateAffectedIncorrectNumberOfRowsException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.core.namedparam.*;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.sql.DataSource;
-import java.sql.Types;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public abstract class AbstractGenericDao extends NamedParameterJdbcDaoSupport implements GenericDao {
 
+    public static final int DEFAULT_STREAM_FETCH_SIZE = 1000;
+
     private final DSLContext dslContext;
 
+    private int streamFetchSize = DEFAULT_STREAM_FETCH_SIZE;
+
+    private volatile QueryRenderCache renderCache;
+
+    private int maxBatchSize;
+
+    private boolean rewriteBatchedInserts;
+
+    private CopySink copySink = PgCopySink.INSTANCE;
+
+    private Executor parallelExecutor;
+
+    private int batchParallelism = 1;
+
+    private int scanParallelism = 1;
+
+    private DaoMetrics daoMetrics = DaoMetrics.NOOP;
+
+    private List<DataSource> replicaDataSources = Collections.emptyList();
+
+    private ReplicaSelection replicaSelection = ReplicaSelection.ROUND_ROBIN;
+
+    private Duration maxReplicationLag;
+
+    private Duration replicationLagCheckInterval = Duration.ofSeconds(1);
+
+    private volatile ReplicaRouter replicaRouter;
+
+    private volatile ResultCache resultCache;
+
+    private boolean inListsAsArrays;
+
+    private Duration slowStatementThreshold;
+
+    private double explainSamplingRate = 1.0;
+
+    private Duration explainInterval = Duration.ofMinutes(1);
+
+    private boolean explainAnalyze;
+
+    private ExplainSink explainSink;
+
+    private ExecutorService explainExecutor;
+
+    private ExecutorService lagCheckExecutor;
+
+    private volatile SlowStatementExplainer slowStatementExplainer;
+
+    private int maxConcurrentStatements;
+
+    private final Map<StatementType, Integer> maxConcurrentStatementsByType = new EnumMap<>(StatementType.class);
+
+    private Duration bulkheadMaxWait = Duration.ZERO;
+
+    private volatile Bulkhead bulkhead;
+
+    private final Map<Class<?>, RowMapper<?>> singleColumnRowMappers = new ConcurrentHashMap<>();
+
     public AbstractGenericDao(DataSource dataSource) {
         setDataSource(dataSource);
         Configuration configuration = new DefaultConfiguration();
@@ -35,70 +127,414 @@ public abstract class AbstractGenericDao extends NamedParameterJdbcDaoSupport im
         this.dslContext = DSL.using(configuration);
     }
 
+    @Override
+    protected JdbcTemplate createJdbcTemplate(DataSource dataSource) {
+        return new DeadlineJdbcTemplate(dataSource);
+    }
+
     protected DSLContext getDslContext() {
         return dslContext;
     }
 
+    public int getStreamFetchSize() {
+        return streamFetchSize;
+    }
+
+    public void setStreamFetchSize(int streamFetchSize) {
+        if (streamFetchSize <= 0) {
+            throw new IllegalArgumentException("Stream fetch size must be positive");
+        }
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    /**
+     * Enables {@link #renderNamedSql(Object, Query)} to render each query shape once, 0 disables it.
+     */
+    public void setRenderCacheSize(int renderCacheSize) {
+        if (renderCacheSize < 0) {
+            throw new IllegalArgumentException("Render cache size must not be negative");
+        }
+        this.renderCache = renderCacheSize > 0 ? new QueryRenderCache(renderCacheSize) : null;
+    }
+
+    public long getRenderCacheHits() {
+        QueryRenderCache cache = renderCache;
+        return cache != null ? cache.getHits() : 0;
+    }
+
+    public long getRenderCacheMisses() {
+        QueryRenderCache cache = renderCache;
+        return cache != null ? cache.getMisses() : 0;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 0) {
+            throw new IllegalArgumentException("Max batch size must not be negative");
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public boolean isRewriteBatchedInserts() {
+        return rewriteBatchedInserts;
+    }
+
+    public void setRewriteBatchedInserts(boolean rewriteBatchedInserts) {
+        this.rewriteBatchedInserts = rewriteBatchedInserts;
+    }
+
+    public void setCopySink(CopySink copySink) {
+        this.copySink = copySink;
+    }
+
+    public Executor getParallelExecutor() {
+        return parallelExecutor;
+    }
+
+    /**
+     * Executor for work that may run on several pooled connections at once, see {@link DaoExecutors}.
+     */
+    public void setParallelExecutor(Executor parallelExecutor) {
+        this.parallelExecutor = parallelExecutor;
+    }
+
+    public int getBatchParallelism() {
+        return batchParallelism;
+    }
+
+    /**
+     * Max number of statement groups {@link #batchExecute(List, int, NamedParameterJdbcTemplate)} runs concurrently
+     * on {@link #setParallelExecutor the parallel executor}, each group on its own connection. Groups keep the
+     * order of their statements but may complete in any order relative to each other. After a group fails no
+     * further groups are started, running groups are awaited and the first failure is thrown; groups that already
+     * completed stay applied. Execution is sequential when a transaction or connection is bound to the thread.
+     */
+    public void setBatchParallelism(int batchParallelism) {
+        if (batchParallelism <= 0) {
+            throw new IllegalArgumentException("Batch parallelism must be positive");
+        }
+        this.batchParallelism = batchParallelism;
+    }
+
+    public int getScanParallelism() {
+        return scanParallelism;
+    }
+
+    /**
+     * Max number of partitions {@code fetchPartitioned} reads concurrently on {@link #setParallelExecutor the
+     * parallel executor}, each on its own connection. Partitions are read one by one on the calling thread when
+     * a transaction or connection is bound to it. A partition the executor rejects fails the scan, so the executor
+     * should have queue room for this many tasks.
+     */
+    public void setScanParallelism(int scanParallelism) {
+        if (scanParallelism <= 0) {
+            throw new IllegalArgumentException("Scan parallelism must be positive");
+        }
+        this.scanParallelism = scanParallelism;
+    }
+
+    public DaoMetrics getDaoMetrics() {
+        return daoMetrics;
+    }
+
+    public void setDaoMetrics(DaoMetrics daoMetrics) {
+        this.daoMetrics = daoMetrics != null ? daoMetrics : DaoMetrics.NOOP;
+    }
+
+    public List<DataSource> getReplicaDataSources() {
+        return replicaDataSources;
+    }
+
+    /**
+     * Data sources reads are routed to. Only the overloads without a {@link NamedParameterJdbcTemplate} argument
+     * are routed, and only when no transaction or connection is bound to the thread; writes always go to the
+     * primary data source.
+     */
+    public void setReplicaDataSources(List<DataSource> replicaDataSources) {
+        this.replicaDataSources = replicaDataSources != null
+                ? new ArrayList<>(replicaDataSources)
+                : Collections.emptyList();
+        updateReplicaRouter();
+    }
+
+    public ReplicaSelection getReplicaSelection() {
+        return replicaSelection;
+    }
+
+    public void setReplicaSelection(ReplicaSelection replicaSelection) {
+        this.replicaSelection = replicaSelection;
+        updateReplicaRouter();
+    }
+
+    public Duration getMaxReplicationLag() {
+        return maxReplicationLag;
+    }
+
+    /**
+     * Replicas lagging behind the primary by more than this are skipped; reads fall back to the primary when every
+     * replica is behind. The lag is checked in the background, replicas are skipped until their first check
+     * succeeds. Null (the default) disables the check.
+     */
+    public void setMaxReplicationLag(Duration maxReplicationLag) {
+        this.maxReplicationLag = maxReplicationLag;
+        updateReplicaRouter();
+    }
+
+    public Duration getReplicationLagCheckInterval() {
+        return replicationLagCheckInterval;
+    }
+
+    public void setReplicationLagCheckInterval(Duration replicationLagCheckInterval) {
+        this.replicationLagCheckInterval = replicationLagCheckInterval;
+        updateReplicaRouter();
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Caches results of the {@code fetchOne}/{@code fetch} overloads without a {@link NamedParameterJdbcTemplate}
+     * argument, see {@link ResultCache}. Reads inside a transaction bypass the cache.
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public boolean isInListsAsArrays() {
+        return inListsAsArrays;
+    }
+
+    /**
+     * Renders IN-lists of queries created with {@link #getDslContext()} as {@code field = any(:array)} and NOT IN as
+     * {@code field <> all(:array)}, so statements differing only in list sizes share the same SQL, server side
+     * prepared statement and {@link #batchExecute(List)} group. Array params are bound as {@link java.sql.Array}.
+     */
+    public void setInListsAsArrays(boolean inListsAsArrays) {
+        this.inListsAsArrays = inListsAsArrays;
+        dslContext.configuration().set(inListsAsArrays
+                ? new VisitListenerProvider[]{new DefaultVisitListenerProvider(new InListArrayRewriter())}
+                : new VisitListenerProvider[0]);
+    }
+
+    public Duration getSlowStatementThreshold() {
+        return slowStatementThreshold;
+    }
+
+    /**
+     * Fetches and executes running longer than this get their plan captured with {@code EXPLAIN (FORMAT JSON)}
+     * and passed to {@link #setExplainSink the explain sink}. Plans are captured on a background thread with the
+     * same named SQL, bind values and template, at most once per {@link #setExplainInterval interval} for each
+     * statement. Null (the default) disables capturing.
+     */
+    public void setSlowStatementThreshold(Duration slowStatementThreshold) {
+        this.slowStatementThreshold = slowStatementThreshold;
+        updateSlowStatementExplainer();
+    }
+
+    public double getExplainSamplingRate() {
+        return explainSamplingRate;
+    }
+
+    /**
+     * Share of slow statements considered for capturing, from 0 to 1.
+     */
+    public void setExplainSamplingRate(double explainSamplingRate) {
+        if (explainSamplingRate < 0 || explainSamplingRate > 1) {
+            throw new IllegalArgumentException("Explain sampling rate must be between 0 and 1");
+        }
+        this.explainSamplingRate = explainSamplingRate;
+        updateSlowStatementExplainer();
+    }
+
+    public Duration getExplainInterval() {
+        return explainInterval;
+    }
+
+    public void setExplainInterval(Duration explainInterval) {
+        this.explainInterval = explainInterval;
+        updateSlowStatementExplainer();
+    }
+
+    public boolean isExplainAnalyze() {
+        return explainAnalyze;
+    }
+
+    /**
+     * Captures plans of selects with {@code EXPLAIN (ANALYZE, FORMAT JSON)}, which executes the select once more,
+     * including the function calls in it, so do not enable it for selects calling functions with side effects such
+     * as {@code nextval} or {@code pg_advisory_lock}. Writes, including ones fetched with {@code returning}, and
+     * selects with a locking clause such as {@code for update} are never analyzed.
+     */
+    public void setExplainAnalyze(boolean explainAnalyze) {
+        this.explainAnalyze = explainAnalyze;
+        updateSlowStatementExplainer();
+    }
+
+    public ExplainSink getExplainSink() {
+        return explainSink;
+    }
+
+    public void setExplainSink(ExplainSink explainSink) {
+        this.explainSink = explainSink;
+        updateSlowStatementExplainer();
+    }
+
+    public int getMaxConcurrentStatements() {
+        return maxConcurrentStatements;
+    }
+
+    /**
+     * Max number of statements running through this dao at once, 0 (the default) for no limit. A statement over the
+     * limit waits up to {@link #setBulkheadMaxWait the max wait} and then fails with {@link DaoRejectedException}.
+     * Streams returned by {@code fetchStream} are not counted.
+     */
+    public void setMaxConcurrentStatements(int maxConcurrentStatements) {
+        if (maxConcurrentStatements < 0) {
+            throw new IllegalArgumentException("Max concurrent statements must not be negative");
+        }
+        this.maxConcurrentStatements = maxConcurrentStatements;
+        updateBulkhead();
+    }
+
+    /**
+     * Same as {@link #setMaxConcurrentStatements(int)} for statements of one type, applied in addition to it.
+     */
+    public void setMaxConcurrentStatements(StatementType type, int maxConcurrentStatements) {
+        if (maxConcurrentStatements < 0) {
+            throw new IllegalArgumentException("Max concurrent statements must not be negative");
+        }
+        if (maxConcurrentStatements > 0) {
+            maxConcurrentStatementsByType.put(type, maxConcurrentStatements);
+        } else {
+            maxConcurrentStatementsByType.remove(type);
+        }
+        updateBulkhead();
+    }
+
+    public Duration getBulkheadMaxWait() {
+        return bulkheadMaxWait;
+    }
+
+    public void setBulkheadMaxWait(Duration bulkheadMaxWait) {
+        this.bulkheadMaxWait = bulkheadMaxWait;
+        updateBulkhead();
+    }
+
+    private synchronized void updateBulkhead() {
+        bulkhead = maxConcurrentStatements > 0 || !maxConcurrentStatementsByType.isEmpty()
+                ? new Bulkhead(maxConcurrentStatements, maxConcurrentStatementsByType, bulkheadMaxWait.toNanos())
+                : null;
+    }
+
+    private synchronized void updateSlowStatementExplainer() {
+        if (slowStatementThreshold == null || explainSink == null || explainSamplingRate == 0) {
+            slowStatementExplainer = null;
+            return;
+        }
+        if (explainExecutor == null) {
+            explainExecutor = DaoExecutors.newBoundedExecutor("explain-" + getClass().getSimpleName(), 1, 16);
+        }
+        slowStatementExplainer = new SlowStatementExplainer(
+                slowStatementThreshold,
+                explainSamplingRate,
+                explainInterval,
+                explainAnalyze,
+                explainSink,
+                explainExecutor
+        );
+    }
+
+    private synchronized void updateReplicaRouter() {
+        if (replicaDataSources.isEmpty()) {
+            replicaRouter = null;
+            return;
+        }
+        if (maxReplicationLag != null && lagCheckExecutor == null) {
+            lagCheckExecutor = DaoExecutors.newBoundedExecutor("replica-lag-" + getClass().getSimpleName(), 1, 16);
+        }
+        replicaRouter = new ReplicaRouter(
+                replicaDataSources.stream()
+                        .map(dataSource -> new NamedParameterJdbcTemplate(new DeadlineJdbcTemplate(dataSource)))
+                        .collect(Collectors.toList()),
+                replicaSelection,
+                maxReplicationLag,
+                replicationLagCheckInterval,
+                lagCheckExecutor
+        );
+    }
+
     @Override
     public <T> T fetchOne(Query query, Class<T> type) throws DaoException {
-        return fetchOne(query, type, getNamedParameterJdbcTemplate());
+        return fetchOne(query, singleColumnRowMapper(type));
     }
 
     @Override
     public <T> T fetchOne(Query query, Class<T> type, NamedParameterJdbcTemplate namedParameterJdbcTemplate)
             throws DaoException {
-        return fetchOne(query, new SingleColumnRowMapper<>(type), namedParameterJdbcTemplate);
+        return fetchOne(query, singleColumnRowMapper(type), namedParameterJdbcTemplate);
     }
 
     @Override
     public <T> T fetchOne(Query query, RowMapper<T> rowMapper) throws DaoException {
-        return fetchOne(query, rowMapper, getNamedParameterJdbcTemplate());
+        RenderedQuery renderedQuery = render(query);
+        return fetchOne(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()), rowMapper);
     }
 
     @Override
     public <T> T fetchOne(String namedSql, SqlParameterSource parameterSource, RowMapper<T> rowMapper)
             throws DaoException {
-        return fetchOne(namedSql, parameterSource, rowMapper, getNamedParameterJdbcTemplate());
+        return cached(StatementType.FETCH_ONE, namedSql, parameterSource, rowMapper,
+                () -> onReadTemplate(template -> fetchOne(namedSql, parameterSource, rowMapper, template)));
     }
 
     @Override
     public <T> T fetchOne(Query query, RowMapper<T> rowMapper, NamedParameterJdbcTemplate namedParameterJdbcTemplate)
             throws DaoException {
-        return fetchOne(query.getSQL(ParamType.NAMED), toSqlParameterSource(query.getParams()), rowMapper,
+        RenderedQuery renderedQuery = render(query);
+        return fetchOne(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()), rowMapper,
                 namedParameterJdbcTemplate);
     }
 
     @Override
     public <T> T fetchOne(String namedSql, SqlParameterSource parameterSource, RowMapper<T> rowMapper,
                           NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException {
-        try {
-            return namedParameterJdbcTemplate.queryForObject(
-                    namedSql,
-                    parameterSource,
-                    rowMapper
-            );
-        } catch (EmptyResultDataAccessException ex) {
-            return null;
-        } catch (NestedRuntimeException ex) {
-            throw new DaoException(ex);
-        }
+        return observe(StatementType.FETCH_ONE, namedSql, parameterSource, namedParameterJdbcTemplate, () -> {
+            try {
+                return namedParameterJdbcTemplate.queryForObject(
+                        namedSql,
+                        parameterSource,
+                        rowMapper
+                );
+            } catch (EmptyResultDataAccessException ex) {
+                return null;
+            } catch (NestedRuntimeException ex) {
+                throw new DaoException(ex);
+            }
+        }, result -> result != null ? 1 : 0);
     }
 
     @Override
     public <T> List<T> fetch(Query query, RowMapper<T> rowMapper) throws DaoException {
-        return fetch(query, rowMapper, getNamedParameterJdbcTemplate());
+        RenderedQuery renderedQuery = render(query);
+        return fetch(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()), rowMapper);
     }
 
     @Override
     public <T> List<T> fetch(String namedSql, SqlParameterSource parameterSource, RowMapper<T> rowMapper)
             throws DaoException {
-        return fetch(namedSql, parameterSource, rowMapper, getNamedParameterJdbcTemplate());
+        return cached(StatementType.FETCH, namedSql, parameterSource, rowMapper,
+                () -> onReadTemplate(template -> fetch(namedSql, parameterSource, rowMapper, template)));
     }
 
     @Override
     public <T> List<T> fetch(Query query, RowMapper<T> rowMapper, NamedParameterJdbcTemplate namedParameterJdbcTemplate)
             throws DaoException {
-        return fetch(query.getSQL(ParamType.NAMED), toSqlParameterSource(query.getParams()), rowMapper,
+        RenderedQuery renderedQuery = render(query);
+        return fetch(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()), rowMapper,
                 namedParameterJdbcTemplate);
     }
 
@@ -108,15 +544,189 @@ public abstract class AbstractGenericDao extends NamedParameterJdbcDaoSupport im
             SqlParameterSource parameterSource,
             RowMapper<T> rowMapper,
             NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException {
-        try {
-            return namedParameterJdbcTemplate.query(
-                    namedSql,
-                    parameterSource,
-                    rowMapper
-            );
-        } catch (NestedRuntimeException e) {
-            throw new DaoException(e);
+        return observe(StatementType.FETCH, namedSql, parameterSource, namedParameterJdbcTemplate, () -> {
+            try {
+                return namedParameterJdbcTemplate.query(
+                        namedSql,
+                        parameterSource,
+                        rowMapper
+                );
+            } catch (NestedRuntimeException e) {
+                throw new DaoException(e);
+            }
+        }, List::size);
+    }
+
+    @Override
+    public <T> Stream<T> fetchStream(Query query, RowMapper<T> rowMapper) throws DaoException {
+        return fetchStream(query, rowMapper, readTemplate());
+    }
+
+    @Override
+    public <T> Stream<T> fetchStream(String namedSql, SqlParameterSource parameterSource, RowMapper<T> rowMapper)
+            throws DaoException {
+        return fetchStream(namedSql, parameterSource, rowMapper, readTemplate());
+    }
+
+    @Override
+    public <T> Stream<T> fetchStream(Query query, RowMapper<T> rowMapper,
+                                     NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException {
+        RenderedQuery renderedQuery = render(query);
+        return fetchStream(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()), rowMapper,
+                namedParameterJdbcTemplate);
+    }
+
+    @Override
+    public <T> Stream<T> fetchStream(String namedSql, SqlParameterSource parameterSource, RowMapper<T> rowMapper,
+                                     NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException {
+        return ResultSetSpliterator.stream(
+                namedParameterJdbcTemplate.getJdbcTemplate(),
+                namedSql,
+                parameterSource,
+                rowMapper,
+                streamFetchSize
+        );
+    }
+
+    @Override
+    public <T> long fetch(Query query, RowMapper<T> rowMapper, Consumer<? super T> consumer) throws DaoException {
+        return onReadTemplate(template -> fetch(query, rowMapper, consumer, template));
+    }
+
+    @Override
+    public <T> long fetch(String namedSql, SqlParameterSource parameterSource, RowMapper<T> rowMapper,
+                          Consumer<? super T> consumer) throws DaoException {
+        return onReadTemplate(template -> fetch(namedSql, parameterSource, rowMapper, consumer, template));
+    }
+
+    @Override
+    public <T> long fetch(Query query, RowMapper<T> rowMapper, Consumer<? super T> consumer,
+                          NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException {
+        RenderedQuery renderedQuery = render(query);
+        return fetch(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()), rowMapper,
+                consumer, namedParameterJdbcTemplate);
+    }
+
+    @Override
+    public <T> long fetch(String namedSql, SqlParameterSource parameterSource, RowMapper<T> rowMapper,
+                          Consumer<? super T> consumer, NamedParameterJdbcTemplate namedParameterJdbcTemplate)
+            throws DaoException {
+        return observe(StatementType.FETCH, namedSql, 1, () -> {
+            long count = 0;
+            try (Stream<T> stream = fetchStream(namedSql, parameterSource, rowMapper, namedParameterJdbcTemplate)) {
+                Iterator<T> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    consumer.accept(iterator.next());
+                    count++;
+                }
+            }
+            return count;
+        }, Long::longValue);
+    }
+
+    @Override
+    public long[] fetchLongs(Query query) throws DaoException {
+        return fetchColumns(query, ColumnType.LONG).getLongs(0);
+    }
+
+    @Override
+    public long[] fetchLongs(String namedSql, SqlParameterSource parameterSource) throws DaoException {
+        return fetchColumns(namedSql, parameterSource, ColumnType.LONG).getLongs(0);
+    }
+
+    @Override
+    public int[] fetchInts(Query query) throws DaoException {
+        return fetchColumns(query, ColumnType.INT).getInts(0);
+    }
+
+    @Override
+    public int[] fetchInts(String namedSql, SqlParameterSource parameterSource) throws DaoException {
+        return fetchColumns(namedSql, parameterSource, ColumnType.INT).getInts(0);
+    }
+
+    @Override
+    public double[] fetchDoubles(Query query) throws DaoException {
+        return fetchColumns(query, ColumnType.DOUBLE).getDoubles(0);
+    }
+
+    @Override
+    public double[] fetchDoubles(String namedSql, SqlParameterSource parameterSource) throws DaoException {
+        return fetchColumns(namedSql, parameterSource, ColumnType.DOUBLE).getDoubles(0);
+    }
+
+    @Override
+    public PrimitiveColumns fetchColumns(Query query, ColumnType... columnTypes) throws DaoException {
+        RenderedQuery renderedQuery = render(query);
+        return fetchColumns(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()),
+                columnTypes);
+    }
+
+    @Override
+    public PrimitiveColumns fetchColumns(String namedSql, SqlParameterSource parameterSource,
+                                         ColumnType... columnTypes) throws DaoException {
+        return onReadTemplate(template -> fetchColumns(namedSql, parameterSource, template, columnTypes));
+    }
+
+    @Override
+    public PrimitiveColumns fetchColumns(String namedSql, SqlParameterSource parameterSource,
+                                         NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                         ColumnType... columnTypes) throws DaoException {
+        PrimitiveColumnsExtractor extractor = new PrimitiveColumnsExtractor(columnTypes);
+        return observe(StatementType.FETCH, namedSql, parameterSource, namedParameterJdbcTemplate, () -> {
+            try {
+                return namedParameterJdbcTemplate.query(namedSql, parameterSource, extractor);
+            } catch (NestedRuntimeException ex) {
+                throw new DaoException(ex);
+            }
+        }, PrimitiveColumns::size);
+    }
+
+    @Override
+    public void fetchMany(MultiFetch multiFetch) throws DaoException {
+        onReadTemplate(template -> {
+            fetchMany(multiFetch, template);
+            return null;
+        });
+    }
+
+    /**
+     * Sends all queries of {@code multiFetch} to the database as one multi-statement prepared statement.
+     */
+    @Override
+    public void fetchMany(MultiFetch multiFetch, NamedParameterJdbcTemplate namedParameterJdbcTemplate)
+            throws DaoException {
+        List<Query> queries = multiFetch.getQueries();
+        if (queries.isEmpty()) {
+            multiFetch.complete(Collections.emptyList());
+            return;
         }
+        List<String> namedSqls = new ArrayList<>(queries.size());
+        List<SqlParameterSource> parameterSources = new ArrayList<>(queries.size());
+        for (Query query : queries) {
+            RenderedQuery renderedQuery = render(query);
+            namedSqls.add(renderedQuery.getNamedSql());
+            parameterSources.add(toSqlParameterSource(renderedQuery.getParams()));
+        }
+
+        String namedSql = String.join(PipelinedFetch.STATEMENT_SEPARATOR, namedSqls);
+        ResultCache cache = resultCache;
+        if (cache != null) {
+            cache.registerAll(namedSql, namedSqls);
+        }
+        observe(StatementType.FETCH_MANY, namedSql, queries.size(), () -> {
+            try {
+                List<List<?>> rows = PipelinedFetch.fetch(
+                        namedParameterJdbcTemplate.getJdbcTemplate(),
+                        namedSqls,
+                        parameterSources,
+                        multiFetch.getRowMappers()
+                );
+                multiFetch.complete(rows);
+                return rows;
+            } catch (NestedRuntimeException ex) {
+                throw new DaoException(ex);
+            }
+        }, rows -> rows.stream().mapToLong(List::size).sum());
     }
 
     @Override
@@ -131,7 +741,8 @@ public abstract class AbstractGenericDao extends NamedParameterJdbcDaoSupport im
 
     @Override
     public void executeOne(Query query, KeyHolder keyHolder) throws DaoException {
-        executeOne(query.getSQL(ParamType.NAMED), toSqlParameterSource(query.getParams()), keyHolder);
+        RenderedQuery renderedQuery = render(query);
+        executeOne(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()), keyHolder);
     }
 
     @Override
@@ -153,8 +764,9 @@ public abstract class AbstractGenericDao extends NamedParameterJdbcDaoSupport im
     @Override
     public int execute(Query query, int expectedRowsAffected, NamedParameterJdbcTemplate namedParameterJdbcTemplate)
             throws DaoException {
-        return execute(query.getSQL(ParamType.NAMED), toSqlParameterSource(query.getParams()), expectedRowsAffected,
-                namedParameterJdbcTemplate);
+        RenderedQuery renderedQuery = render(query);
+        return execute(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()),
+                expectedRowsAffected, namedParameterJdbcTemplate);
     }
 
     @Override
@@ -176,37 +788,42 @@ public abstract class AbstractGenericDao extends NamedParameterJdbcDaoSupport im
     @Override
     public int execute(String namedSql, SqlParameterSource parameterSource, int expectedRowsAffected,
                        NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException {
-        try {
-            int rowsAffected = namedParameterJdbcTemplate.update(
-                    namedSql,
-                    parameterSource);
+        return observe(StatementType.EXECUTE, namedSql, parameterSource, namedParameterJdbcTemplate, () -> {
+            try {
+                int rowsAffected = namedParameterJdbcTemplate.update(
+                        namedSql,
+                        parameterSource);
 
-            if (expectedRowsAffected != -1 && rowsAffected != expectedRowsAffected) {
-                throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(namedSql, expectedRowsAffected,
-                        rowsAffected);
+                if (expectedRowsAffected != -1 && rowsAffected != expectedRowsAffected) {
+                    throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(namedSql, expectedRowsAffected,
+                            rowsAffected);
+                }
+                return rowsAffected;
+            } catch (NestedRuntimeException ex) {
+                throw new DaoException(ex);
             }
-            return rowsAffected;
-        } catch (NestedRuntimeException ex) {
-            throw new DaoException(ex);
-        }
+        }, Integer::longValue);
     }
 
     @Override
     public int execute(Query query, KeyHolder keyHolder) throws DaoException {
-        return execute(query.getSQL(ParamType.NAMED), toSqlParameterSource(query.getParams()), -1, keyHolder);
+        RenderedQuery renderedQuery = render(query);
+        return execute(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()), -1, keyHolder);
     }
 
     @Override
     public int execute(Query query, int expectedRowsAffected, KeyHolder keyHolder) throws DaoException {
-        return execute(query.getSQL(ParamType.NAMED), toSqlParameterSource(query.getParams()), expectedRowsAffected,
-                getNamedParameterJdbcTemplate(), keyHolder);
+        RenderedQuery renderedQuery = render(query);
+        return execute(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()),
+                expectedRowsAffected, getNamedParameterJdbcTemplate(), keyHolder);
     }
 
     @Override
     public int execute(Query query, int expectedRowsAffected, NamedParameterJdbcTemplate namedParameterJdbcTemplate,
                        KeyHolder keyHolder) throws DaoException {
-        return execute(query.getSQL(ParamType.NAMED), toSqlParameterSource(query.getParams()), expectedRowsAffected,
-                namedParameterJdbcTemplate, keyHolder);
+        RenderedQuery renderedQuery = render(query);
+        return execute(renderedQuery.getNamedSql(), toSqlParameterSource(renderedQuery.getParams()),
+                expectedRowsAffected, namedParameterJdbcTemplate, keyHolder);
     }
 
     @Override
@@ -228,20 +845,22 @@ public abstract class AbstractGenericDao extends NamedParameterJdbcDaoSupport im
     @Override
     public int execute(String namedSql, SqlParameterSource parameterSource, int expectedRowsAffected,
                        NamedParameterJdbcTemplate namedParameterJdbcTemplate, KeyHolder keyHolder) throws DaoException {
-        try {
-            int rowsAffected = namedParameterJdbcTemplate.update(
-                    namedSql,
-                    parameterSource,
-                    keyHolder);
-
-            if (expectedRowsAffected != -1 && rowsAffected != expectedRowsAffected) {
-                throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(namedSql, expectedRowsAffected,
-                        rowsAffected);
+        return observe(StatementType.EXECUTE, namedSql, parameterSource, namedParameterJdbcTemplate, () -> {
+            try {
+                int rowsAffected = namedParameterJdbcTemplate.update(
+                        namedSql,
+                        parameterSource,
+                        keyHolder);
+
+                if (expectedRowsAffected != -1 && rowsAffected != expectedRowsAffected) {
+                    throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(namedSql, expectedRowsAffected,
+                            rowsAffected);
+                }
+                return rowsAffected;
+            } catch (NestedRuntimeException ex) {
+                throw new DaoException(ex);
             }
-            return rowsAffected;
-        } catch (NestedRuntimeException ex) {
-            throw new DaoException(ex);
-        }
+        }, Integer::longValue);
     }
 
     @Override
@@ -258,27 +877,53 @@ public abstract class AbstractGenericDao extends NamedParameterJdbcDaoSupport im
     public long batchExecute(List<Query> queries,
                              int expectedRowsAffected,
                              NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException {
-        AtomicLong affectedRowCounter = new AtomicLong();
-        queries.stream()
+        return batchExecute(renderGroupedBySql(queries), expectedRowsAffected, namedParameterJdbcTemplate);
+    }
+
+    Map<String, List<SqlParameterSource>> renderGroupedBySql(List<Query> queries) {
+        return queries.stream()
+                .map(this::render)
                 .collect(
                         Collectors.groupingBy(
-                                query -> query.getSQL(ParamType.NAMED),
+                                RenderedQuery::getNamedSql,
                                 LinkedHashMap::new,
-                                Collectors
-                                        .mapping(query -> toSqlParameterSource(query.getParams()), Collectors.toList())
+                                Collectors.mapping(
+                                        renderedQuery -> toSqlParameterSource(renderedQuery.getParams()),
+                                        Collectors.toList()
+                                )
                         )
-                )
-                .forEach(
-                        (namedSql, parameterSources) -> {
-                            long affectedRowCount = batchExecute(
-                                    namedSql,
-                                    parameterSources,
-                                    expectedRowsAffected,
-                                    namedParameterJdbcTemplate
-                            );
-                            affectedRowCounter.getAndAccumulate(affectedRowCount, Long::sum);
-                        }
                 );
+    }
+
+    long batchExecute(Map<String, List<SqlParameterSource>> parameterSourcesBySql,
+                      int expectedRowsAffected,
+                      NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException {
+        if (parameterSourcesBySql.size() > 1 && isParallelAllowed(batchParallelism, namedParameterJdbcTemplate)) {
+            List<Callable<Long>> tasks = parameterSourcesBySql.entrySet().stream()
+                    .map(entry -> (Callable<Long>) () -> batchExecute(
+                            entry.getKey(),
+                            entry.getValue(),
+                            expectedRowsAffected,
+                            namedParameterJdbcTemplate
+                    ))
+                    .collect(Collectors.toList());
+            return ParallelExecution.invokeAll(parallelExecutor, batchParallelism, tasks).stream()
+                    .mapToLong(Long::longValue)
+                    .sum();
+        }
+
+        AtomicLong affectedRowCounter = new AtomicLong();
+        parameterSourcesBySql.forEach(
+                (namedSql, parameterSources) -> {
+                    long affectedRowCount = batchExecute(
+                            namedSql,
+                            parameterSources,
+                            expectedRowsAffected,
+                            namedParameterJdbcTemplate
+                    );
+                    affectedRowCounter.getAndAccumulate(affectedRowCount, Long::sum);
+                }
+        );
         return affectedRowCounter.get();
     }
 
@@ -296,29 +941,414 @@ public abstract class AbstractGenericDao extends NamedParameterJdbcDaoSupport im
     @Override
     public long batchExecute(String namedSql, List<SqlParameterSource> parameterSources, int expectedRowsAffected,
                              NamedParameterJdbcTemplate namedParameterJdbcTemplate) throws DaoException {
-        try {
+        return observe(StatementType.BATCH_EXECUTE, namedSql, parameterSources.size(), () -> {
+            try {
+                MultiRowInsert multiRowInsert = rewriteBatchedInserts && parameterSources.size() > 1
+                        ? MultiRowInsert.parse(namedSql)
+                        : null;
+
+                int count = 0;
+                if (multiRowInsert != null) {
+                    int rowsPerStatement = maxBatchSize > 0
+                            ? Math.min(maxBatchSize, multiRowInsert.getMaxRows())
+                            : multiRowInsert.getMaxRows();
+                    for (List<SqlParameterSource> chunk : chunks(parameterSources, rowsPerStatement)) {
+                        count += namedParameterJdbcTemplate.update(
+                                multiRowInsert.getSql(chunk.size()),
+                                multiRowInsert.getParameterSource(chunk)
+                        );
+                    }
+                } else {
+                    for (int i : batchUpdate(namedSql, parameterSources, namedParameterJdbcTemplate)) {
+                        count += i;
+                    }
+                }
+
+                if (expectedRowsAffected != -1) {
+                    if (count != expectedRowsAffected) {
+                        throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(namedSql, expectedRowsAffected,
+                                count);
+                    }
+                }
+
+                return count;
+            } catch (NestedRuntimeException ex) {
+                throw new DaoException(ex);
+            }
+        }, Integer::longValue);
+    }
+
+    /**
+     * Fills {@code keyHolder} with one key map per query in input order, an empty map for queries that affected
+     * no rows. Consecutive queries with the same SQL are executed as one batch.
+     */
+    @Override
+    public long batchExecute(List<Query> queries, KeyHolder keyHolder) throws DaoException {
+        List<Map<String, Object>> keys = new ArrayList<>(queries.size());
+        long count = 0;
+        String namedSql = null;
+        List<SqlParameterSource> parameterSources = new ArrayList<>();
+        for (Query query : queries) {
+            RenderedQuery renderedQuery = render(query);
+            if (namedSql != null && !namedSql.equals(renderedQuery.getNamedSql())) {
+                count += batchExecuteForKeys(namedSql, parameterSources, getNamedParameterJdbcTemplate(), keys);
+                parameterSources = new ArrayList<>();
+            }
+            namedSql = renderedQuery.getNamedSql();
+            parameterSources.add(toSqlParameterSource(renderedQuery.getParams()));
+        }
+        if (namedSql != null) {
+            count += batchExecuteForKeys(namedSql, parameterSources, getNamedParameterJdbcTemplate(), keys);
+        }
+        keyHolder.getKeyList().clear();
+        keyHolder.getKeyList().addAll(keys);
+        return count;
+    }
+
+    @Override
+    public long batchExecute(String namedSql, List<SqlParameterSource> parameterSources, KeyHolder keyHolder)
+            throws DaoException {
+        return batchExecute(namedSql, parameterSources, getNamedParameterJdbcTemplate(), keyHolder);
+    }
+
+    @Override
+    public long batchExecute(String namedSql, List<SqlParameterSource> parameterSources,
+                             NamedParameterJdbcTemplate namedParameterJdbcTemplate, KeyHolder keyHolder)
+            throws DaoException {
+        List<Map<String, Object>> keys = new ArrayList<>(parameterSources.size());
+        long count = batchExecuteForKeys(namedSql, parameterSources, namedParameterJdbcTemplate, keys);
+        keyHolder.getKeyList().clear();
+        keyHolder.getKeyList().addAll(keys);
+        return count;
+    }
+
+    private long batchExecuteForKeys(String namedSql,
+                                     List<SqlParameterSource> parameterSources,
+                                     NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                     List<Map<String, Object>> keys) throws DaoException {
+        return observe(StatementType.BATCH_EXECUTE, namedSql, parameterSources.size(), () -> {
+            try {
+                MultiRowInsert multiRowInsert = rewriteBatchedInserts && parameterSources.size() > 1
+                        ? MultiRowInsert.parse(namedSql)
+                        : null;
+
+                int count = 0;
+                if (multiRowInsert != null && !multiRowInsert.isConflictIgnored()) {
+                    int rowsPerStatement = maxBatchSize > 0
+                            ? Math.min(maxBatchSize, multiRowInsert.getMaxRows())
+                            : multiRowInsert.getMaxRows();
+                    for (List<SqlParameterSource> chunk : chunks(parameterSources, rowsPerStatement)) {
+                        GeneratedKeyHolder chunkKeyHolder = new GeneratedKeyHolder();
+                        count += namedParameterJdbcTemplate.update(
+                                multiRowInsert.getSql(chunk.size()),
+                                multiRowInsert.getParameterSource(chunk),
+                                chunkKeyHolder
+                        );
+                        keys.addAll(chunkKeyHolder.getKeyList());
+                    }
+                } else {
+                    for (List<SqlParameterSource> chunk : chunks(parameterSources, maxBatchSize)) {
+                        int[] rowsAffected = namedParameterJdbcTemplate.getJdbcTemplate().execute(
+                                (ConnectionCallback<int[]>) connection ->
+                                        GeneratedKeysBatch.execute(connection, namedSql, chunk, keys)
+                        );
+                        for (int i : rowsAffected) {
+                            count += i;
+                        }
+                    }
+                }
+                return count;
+            } catch (NestedRuntimeException ex) {
+                throw new DaoException(ex);
+            }
+        }, Integer::longValue);
+    }
+
+    int[] executeBatch(String namedSql, List<SqlParameterSource> parameterSources) throws DaoException {
+        return observe(StatementType.BATCH_EXECUTE, namedSql, parameterSources.size(), () -> {
+            try {
+                return batchUpdate(namedSql, parameterSources, getNamedParameterJdbcTemplate());
+            } catch (NestedRuntimeException ex) {
+                throw new DaoException(ex);
+            }
+        }, rowsAffected -> Arrays.stream(rowsAffected).sum());
+    }
+
+    int[] batchUpdate(String namedSql, List<SqlParameterSource> parameterSources,
+                      NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        int[] rowsAffected = new int[parameterSources.size()];
+        int position = 0;
+        for (List<SqlParameterSource> chunk : chunks(parameterSources, maxBatchSize)) {
             int[] rowsPerBatchAffected = namedParameterJdbcTemplate
-                    .batchUpdate(namedSql, parameterSources.toArray(new SqlParameterSource[0]));
+                    .batchUpdate(namedSql, chunk.toArray(new SqlParameterSource[0]));
 
-            if (rowsPerBatchAffected.length != parameterSources.size()) {
-                throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(namedSql, parameterSources.size(),
+            if (rowsPerBatchAffected.length != chunk.size()) {
+                throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(namedSql, chunk.size(),
                         rowsPerBatchAffected.length);
             }
+            System.arraycopy(rowsPerBatchAffected, 0, rowsAffected, position, rowsPerBatchAffected.length);
+            position += rowsPerBatchAffected.length;
+        }
+        return rowsAffected;
+    }
 
-            int count = 0;
-            for (int i : rowsPerBatchAffected) {
-                count += i;
-            }
-            if (expectedRowsAffected != -1) {
-                if (count != expectedRowsAffected) {
-                    throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(namedSql, expectedRowsAffected, count);
+    private <R> R observe(StatementType type, String namedSql, SqlParameterSource parameterSource,
+                          NamedParameterJdbcTemplate namedParameterJdbcTemplate, Supplier<R> statement,
+                          ToLongFunction<R> rowCounter) throws DaoException {
+        SlowStatementExplainer explainer = slowStatementExplainer;
+        if (explainer == null) {
+            return observe(type, namedSql, 1, statement, rowCounter);
+        }
+        long startTime = System.nanoTime();
+        try {
+            return observe(type, namedSql, 1, statement, rowCounter);
+        } finally {
+            explainer.onExecuted(type, namedSql, parameterSource, namedParameterJdbcTemplate,
+                    System.nanoTime() - startTime);
+        }
+    }
+
+    private <R> R observe(StatementType type, String namedSql, int batchSize, Supplier<R> statement,
+                          ToLongFunction<R> rowCounter) throws DaoException {
+        Long remainingNanos = DaoDeadline.remainingNanos();
+        if (remainingNanos != null && remainingNanos <= 0) {
+            throw new DaoRejectedException("Deadline exceeded");
+        }
+        Bulkhead statementBulkhead = bulkhead;
+        if (statementBulkhead == null) {
+            return invalidating(type, namedSql, batchSize, statement, rowCounter);
+        }
+        statementBulkhead.acquire(type);
+        try {
+            return invalidating(type, namedSql, batchSize, statement, rowCounter);
+        } finally {
+            statementBulkhead.release(type);
+        }
+    }
+
+    private <R> R invalidating(StatementType type, String namedSql, int batchSize, Supplier<R> statement,
+                               ToLongFunction<R> rowCounter) throws DaoException {
+        ResultCache cache = resultCache;
+        if (cache == null || !cache.isWrite(namedSql)) {
+            return measure(type, namedSql, batchSize, statement, rowCounter);
+        }
+        try {
+            return measure(type, namedSql, batchSize, statement, rowCounter);
+        } finally {
+            invalidateAfterWrite(cache, () -> cache.invalidate(namedSql));
+        }
+    }
+
+    private static void invalidateAfterWrite(ResultCache cache, Runnable invalidation) {
+        invalidation.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidation.run();
                 }
+            });
+        }
+    }
+
+    private <T> T cached(StatementType type, String namedSql, SqlParameterSource parameterSource,
+                         RowMapper<?> rowMapper, Supplier<T> fetch) {
+        ResultCache cache = resultCache;
+        if (cache == null || isBoundToThread(getNamedParameterJdbcTemplate())) {
+            return fetch.get();
+        }
+        return cache.get(type, namedSql, parameterSource, rowMapper, fetch);
+    }
+
+    private <R> R measure(StatementType type, String namedSql, int batchSize, Supplier<R> statement,
+                          ToLongFunction<R> rowCounter) {
+        DaoMetrics metrics = daoMetrics;
+        if (metrics == DaoMetrics.NOOP) {
+            return statement.get();
+        }
+
+        long startTime = System.nanoTime();
+        R result;
+        try {
+            result = statement.get();
+        } catch (RuntimeException ex) {
+            metrics.record(type, StatementIds.of(namedSql), batchSize, -1, System.nanoTime() - startTime, ex);
+            throw ex;
+        }
+        metrics.record(type, StatementIds.of(namedSql), batchSize, rowCounter.applyAsLong(result),
+                System.nanoTime() - startTime, null);
+        return result;
+    }
+
+    private boolean isParallelAllowed(int parallelism, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        if (parallelism <= 1 || parallelExecutor == null) {
+            return false;
+        }
+        return !isBoundToThread(namedParameterJdbcTemplate);
+    }
+
+    private static boolean isBoundToThread(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        DataSource dataSource = namedParameterJdbcTemplate.getJdbcTemplate().getDataSource();
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                || dataSource != null && TransactionSynchronizationManager.hasResource(dataSource);
+    }
+
+    private NamedParameterJdbcTemplate readTemplate() {
+        ReplicaRouter router = replicaRouter;
+        NamedParameterJdbcTemplate primary = getNamedParameterJdbcTemplate();
+        return router == null || isBoundToThread(primary) ? primary : router.select(primary);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> RowMapper<T> singleColumnRowMapper(Class<T> type) {
+        return (RowMapper<T>) singleColumnRowMappers.computeIfAbsent(type, SingleColumnRowMapper::new);
+    }
+
+    private <R> R onReadTemplate(Function<NamedParameterJdbcTemplate, R> read) {
+        ReplicaRouter router = replicaRouter;
+        NamedParameterJdbcTemplate primary = getNamedParameterJdbcTemplate();
+        if (router == null || isBoundToThread(primary)) {
+            return read.apply(primary);
+        }
+        return router.read(read, primary);
+    }
+
+    static <E> List<List<E>> chunks(List<E> list, int chunkSize) {
+        if (chunkSize <= 0 || list.size() <= chunkSize) {
+            return Collections.singletonList(list);
+        }
+        List<List<E>> chunks = new ArrayList<>((list.size() + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < list.size(); from += chunkSize) {
+            chunks.add(list.subList(from, Math.min(from + chunkSize, list.size())));
+        }
+        return chunks;
+    }
+
+    public <R extends TableRecord<R>> long bulkCopy(Table<R> table, Iterable<? extends R> records)
+            throws DaoException {
+        return bulkCopy(table, Arrays.asList(table.fields()), records);
+    }
+
+    public <R extends TableRecord<R>> long bulkCopy(Table<R> table,
+                                                    List<? extends Field<?>> fields,
+                                                    Iterable<? extends R> records) throws DaoException {
+        String copySql = "copy " + dslContext.render(table) + " ("
+                + fields.stream()
+                .map(field -> dslContext.render(DSL.name(field.getName())))
+                .collect(Collectors.joining(", "))
+                + ") from stdin";
+        Field<?>[] copyFields = fields.toArray(new Field<?>[0]);
+        ResultCache cache = resultCache;
+        if (cache != null) {
+            cache.registerWrite(copySql, table.getName());
+        }
+        int batchSize = records instanceof Collection ? ((Collection<?>) records).size() : 1;
+        return observe(StatementType.BATCH_EXECUTE, copySql, batchSize, () -> {
+            try {
+                return getJdbcTemplate().execute((ConnectionCallback<Long>) connection -> {
+                    try (Reader data = new CopyRecordReader(records.iterator(), copyFields)) {
+                        return copySink.copyIn(connection, copySql, data);
+                    } catch (IOException ex) {
+                        throw new DaoException("Failed to copy records into " + table.getName(), ex);
+                    }
+                });
+            } catch (NestedRuntimeException ex) {
+                throw new DaoException(ex);
             }
+        }, Long::longValue);
+    }
 
-            return count;
-        } catch (NestedRuntimeException ex) {
-            throw new DaoException(ex);
+    /**
+     * Inserts {@code records} with {@code insert ... values (...), (...) on conflict (conflictKeys)} statements,
+     * updating {@code updateFields} from the excluded row on conflict, or doing nothing when there are none. Records
+     * are grouped by the columns they changed: each group inserts only those columns and the conflict keys, and
+     * updates only the {@code updateFields} it changed, so unchanged columns keep their defaults on insert and their
+     * values on update. When several records share a conflict key only the last one is written. Groups are split
+     * into statements of at most {@link #setMaxBatchSize max batch size} rows within the bind parameter limit; the
+     * statements are not atomic unless a transaction is active.
+     *
+     * @return number of rows inserted or updated
+     */
+    public <R extends TableRecord<R>> long batchUpsert(Table<R> table,
+                                                       Collection<? extends R> records,
+                                                       List<? extends Field<?>> conflictKeys,
+                                                       List<? extends Field<?>> updateFields) throws DaoException {
+        if (conflictKeys.isEmpty()) {
+            throw new IllegalArgumentException("Upsert requires conflict keys");
+        }
+        List<Field<?>> tableFields = Arrays.asList(table.fields());
+        for (Field<?> conflictKey : conflictKeys) {
+            if (!tableFields.contains(conflictKey)) {
+                throw new IllegalArgumentException("Conflict key " + conflictKey + " is not a field of " + table);
+            }
+        }
+        Map<List<Object>, R> recordsByKey = new LinkedHashMap<>();
+        for (R record : records) {
+            Object[] key = new Object[conflictKeys.size()];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = record.get(conflictKeys.get(i));
+            }
+            List<Object> conflictKey = Arrays.asList(key);
+            recordsByKey.remove(conflictKey);
+            recordsByKey.put(conflictKey, record);
+        }
+        if (recordsByKey.isEmpty()) {
+            return 0;
         }
+        Map<List<Field<?>>, List<R>> recordsByFields = new LinkedHashMap<>();
+        for (R record : recordsByKey.values()) {
+            List<Field<?>> fields = tableFields.stream()
+                    .filter(field -> conflictKeys.contains(field) || record.changed(field))
+                    .collect(Collectors.toList());
+            recordsByFields.computeIfAbsent(fields, key -> new ArrayList<>()).add(record);
+        }
+
+        long count = 0;
+        for (Map.Entry<List<Field<?>>, List<R>> group : recordsByFields.entrySet()) {
+            count += upsert(table, group.getKey(), group.getValue(), conflictKeys, updateFields);
+        }
+        return count;
+    }
+
+    private <R extends TableRecord<R>> long upsert(Table<R> table,
+                                                   List<Field<?>> fields,
+                                                   List<R> records,
+                                                   List<? extends Field<?>> conflictKeys,
+                                                   List<? extends Field<?>> updateFields) {
+        Map<Field<?>, Field<?>> updates = new LinkedHashMap<>();
+        for (Field<?> field : updateFields) {
+            if (fields.contains(field)) {
+                updates.put(field, DSL.field(DSL.name("excluded", field.getName()), field.getDataType()));
+            }
+        }
+
+        int rowsPerStatement = MultiRowInsert.MAX_PARAMETERS / fields.size();
+        if (maxBatchSize > 0) {
+            rowsPerStatement = Math.min(rowsPerStatement, maxBatchSize);
+        }
+        long count = 0;
+        for (List<R> chunk : chunks(records, rowsPerStatement)) {
+            InsertValuesStepN<R> insert = dslContext.insertInto(table, fields);
+            for (R record : chunk) {
+                insert = insert.values(upsertValues(record, fields));
+            }
+            Query query = updates.isEmpty()
+                    ? insert.onConflict(conflictKeys).doNothing()
+                    : insert.onConflict(conflictKeys).doUpdate().set(updates);
+            count += execute(query);
+        }
+        return count;
+    }
+
+    private static Field<?>[] upsertValues(TableRecord<?> record, List<Field<?>> fields) {
+        Field<?>[] values = new Field<?>[fields.size()];
+        for (int i = 0; i < values.length; i++) {
+            Field<?> field = fields.get(i);
+            values[i] = record.changed(field)
+                    ? DSL.val(record.get(field), field)
+                    : DSL.defaultValue(field);
+        }
+        return values;
     }
 
     protected Condition appendDateTimeRangeConditions(Condition condition,
@@ -335,23 +1365,198 @@ public abstract class AbstractGenericDao extends NamedParameterJdbcDaoSupport im
         return condition;
     }
 
-    protected SqlParameterSource toSqlParameterSource(Map<String, Param<?>> params) {
-        MapSqlParameterSource sqlParameterSource = new MapSqlParameterSource();
-        for (Map.Entry<String, Param<?>> entry : params.entrySet()) {
-            Param<?> param = entry.getValue();
-            Class<?> type = param.getDataType().getType();
-            if (String.class.isAssignableFrom(type)) {
-                String value = Optional.ofNullable(param.getValue())
-                        .map(stringValue -> ((String) stringValue).replace("\u0000", "\\u0000"))
-                        .orElse(null);
-                sqlParameterSource.addValue(entry.getKey(), value);
-            } else if (LocalDateTime.class.isAssignableFrom(type) || EnumType.class.isAssignableFrom(type)) {
-                sqlParameterSource.addValue(entry.getKey(), param.getValue(), Types.OTHER);
-            } else {
-                sqlParameterSource.addValue(entry.getKey(), param.getValue());
+    /**
+     * Splits {@code [fromTime, toTime)} into partitions of {@code partitionSize}, builds a query for each of them
+     * from {@code condition} narrowed with {@link #appendDateTimeRangeConditions} and returns the rows of all
+     * partitions in partition order. Partitions are read concurrently, see {@link #setScanParallelism}.
+     */
+    protected <T> List<T> fetchPartitioned(Condition condition,
+                                           Field<LocalDateTime> timeField,
+                                           LocalDateTime fromTime,
+                                           LocalDateTime toTime,
+                                           Duration partitionSize,
+                                           Function<Condition, ? extends Query> queryFactory,
+                                           RowMapper<T> rowMapper) throws DaoException {
+        List<Callable<List<T>>> tasks = partitionTasks(condition, timeField, fromTime, toTime, partitionSize,
+                queryFactory, rowMapper);
+        List<T> rows = new ArrayList<>();
+        for (List<T> partitionRows : ParallelExecution.invokeAll(scanExecutor(), scanParallelism(), tasks)) {
+            rows.addAll(partitionRows);
+        }
+        return rows;
+    }
+
+    /**
+     * Same as {@link #fetchPartitioned(Condition, Field, LocalDateTime, LocalDateTime, Duration, Function,
+     * RowMapper)}, but passes rows to {@code consumer} on the calling thread partition by partition, in the order
+     * partitions complete.
+     *
+     * @return number of rows passed to the consumer
+     */
+    protected <T> long fetchPartitioned(Condition condition,
+                                        Field<LocalDateTime> timeField,
+                                        LocalDateTime fromTime,
+                                        LocalDateTime toTime,
+                                        Duration partitionSize,
+                                        Function<Condition, ? extends Query> queryFactory,
+                                        RowMapper<T> rowMapper,
+                                        Consumer<? super T> consumer) throws DaoException {
+        List<Callable<List<T>>> tasks = partitionTasks(condition, timeField, fromTime, toTime, partitionSize,
+                queryFactory, rowMapper);
+        AtomicLong count = new AtomicLong();
+        ParallelExecution.invokeUnordered(scanExecutor(), scanParallelism(), tasks, partitionRows -> {
+            partitionRows.forEach(consumer);
+            count.addAndGet(partitionRows.size());
+        });
+        return count.get();
+    }
+
+    private <T> List<Callable<List<T>>> partitionTasks(Condition condition,
+                                                       Field<LocalDateTime> timeField,
+                                                       LocalDateTime fromTime,
+                                                       LocalDateTime toTime,
+                                                       Duration partitionSize,
+                                                       Function<Condition, ? extends Query> queryFactory,
+                                                       RowMapper<T> rowMapper) {
+        if (partitionSize.isNegative() || partitionSize.isZero()) {
+            throw new IllegalArgumentException("Partition size must be positive");
+        }
+        List<Callable<List<T>>> tasks = new ArrayList<>();
+        LocalDateTime from = fromTime;
+        while (from.isBefore(toTime)) {
+            LocalDateTime next = from.plus(partitionSize);
+            LocalDateTime to = next.isBefore(toTime) ? next : toTime;
+            Query query = queryFactory.apply(
+                    appendDateTimeRangeConditions(condition, timeField, Optional.of(from), Optional.of(to))
+            );
+            tasks.add(() -> fetch(query, rowMapper));
+            from = to;
+        }
+        return tasks;
+    }
+
+    private Executor scanExecutor() {
+        return scanParallelism() > 1 ? parallelExecutor : Runnable::run;
+    }
+
+    private int scanParallelism() {
+        return isParallelAllowed(scanParallelism, getNamedParameterJdbcTemplate()) ? scanParallelism : 1;
+    }
+
+    /**
+     * Iterates the rows of {@code select} page by page, ordered by {@code keys}. Every page after the first
+     * seeks past the key of the previous page's last row instead of using an offset, so with an index on
+     * the keys each page costs the same. Keys must be selected by {@code select}, non null and unique together.
+     */
+    protected <T> Iterator<List<T>> fetchPages(Select<?> select,
+                                               List<? extends Field<?>> keys,
+                                               SortOrder sortOrder,
+                                               int pageSize,
+                                               RowMapper<T> rowMapper) throws DaoException {
+        return fetchPages(select, page -> DSL.noCondition(), keys, sortOrder, pageSize, rowMapper);
+    }
+
+    /**
+     * Same as {@link #fetchPages(Select, List, SortOrder, int, RowMapper)} ordered by {@code timeField} and
+     * {@code tiebreaker}, limited to the {@code [fromTime, toTime)} range.
+     */
+    protected <T> Iterator<List<T>> fetchPages(Select<?> select,
+                                               Field<LocalDateTime> timeField,
+                                               Optional<LocalDateTime> fromTime,
+                                               Optional<LocalDateTime> toTime,
+                                               Field<?> tiebreaker,
+                                               SortOrder sortOrder,
+                                               int pageSize,
+                                               RowMapper<T> rowMapper) throws DaoException {
+        return fetchPages(
+                select,
+                page -> appendDateTimeRangeConditions(
+                        DSL.noCondition(),
+                        page.field(timeField.getName(), LocalDateTime.class),
+                        fromTime,
+                        toTime
+                ),
+                Arrays.asList(timeField, tiebreaker),
+                sortOrder,
+                pageSize,
+                rowMapper
+        );
+    }
+
+    private <T> Iterator<List<T>> fetchPages(Select<?> select,
+                                             Function<Table<?>, Condition> pageCondition,
+                                             List<? extends Field<?>> keys,
+                                             SortOrder sortOrder,
+                                             int pageSize,
+                                             RowMapper<T> rowMapper) {
+        if (keys.isEmpty() || pageSize <= 0) {
+            throw new IllegalArgumentException("Keyset pagination requires keys and a positive page size");
+        }
+        Table<?> page = select.asTable("keyset_page");
+        Field<?>[] pageKeys = new Field<?>[keys.size()];
+        String[] keyNames = new String[keys.size()];
+        Class<?>[] keyTypes = new Class<?>[keys.size()];
+        List<SortField<?>> orderBy = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Field<?> key = keys.get(i);
+            pageKeys[i] = page.field(key.getName());
+            if (pageKeys[i] == null) {
+                throw new IllegalArgumentException("Key '" + key.getName() + "' is not selected");
             }
+            keyNames[i] = key.getName();
+            keyTypes[i] = key.getType();
+            orderBy.add(pageKeys[i].sort(sortOrder));
         }
-        return sqlParameterSource;
+        Condition condition = pageCondition.apply(page);
+
+        return new KeysetPageIterator<>(keyNames, keyTypes, pageSize, rowMapper, (lastKey, pageRowMapper) -> {
+            Condition seekCondition = condition;
+            if (lastKey != null) {
+                seekCondition = seekCondition.and(sortOrder == SortOrder.DESC
+                        ? DSL.row(pageKeys).lt(lastKey)
+                        : DSL.row(pageKeys).gt(lastKey));
+            }
+            RenderedQuery renderedQuery = render(getDslContext().select(page.fields())
+                    .from(page)
+                    .where(seekCondition)
+                    .orderBy(orderBy)
+                    .limit(pageSize));
+            SqlParameterSource parameterSource = toSqlParameterSource(renderedQuery.getParams());
+            // the page mapper captures the seek key, so pages bypass the result cache
+            return onReadTemplate(template -> fetch(renderedQuery.getNamedSql(), parameterSource, pageRowMapper,
+                    template));
+        });
+    }
+
+    RenderedQuery render(Query query) {
+        RenderedQuery renderedQuery = RenderedQuery.of(query);
+        ResultCache results = resultCache;
+        if (results != null) {
+            results.register(renderedQuery.getNamedSql(), query);
+        }
+        return renderedQuery;
+    }
+
+    /**
+     * Renders the named SQL of a query, with a render cache only once per {@code shapeKey}. Queries sharing a key
+     * must differ in bind values only, which are taken with {@link #toSqlParameterSource(Query)}.
+     */
+    protected String renderNamedSql(Object shapeKey, Query query) {
+        QueryRenderCache cache = renderCache;
+        String namedSql = cache != null ? cache.namedSql(shapeKey, query) : query.getSQL(ParamType.NAMED);
+        ResultCache results = resultCache;
+        if (results != null) {
+            results.register(namedSql, query);
+        }
+        return namedSql;
+    }
+
+    protected SqlParameterSource toSqlParameterSource(Query query) {
+        return toSqlParameterSource(query.getParams());
+    }
+
+    protected SqlParameterSource toSqlParameterSource(Map<String, Param<?>> params) {
+        return ParamSqlParameterSource.of(params, inListsAsArrays);
     }
 
 }
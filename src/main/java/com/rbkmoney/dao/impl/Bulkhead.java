@@ -0,0 +1,72 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.dao.DaoDeadline;
+import com.rbkmoney.dao.DaoRejectedException;
+import com.rbkmoney.dao.metrics.StatementType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits statements running at once through one dao, in total and per {@link StatementType}. A statement waits
+ * up to {@code maxWaitNanos}, or until the {@link DaoDeadline}, for a permit and is rejected with
+ * {@link DaoRejectedException} after that.
+ */
+class Bulkhead {
+
+    private final Semaphore permits;
+
+    private final Map<StatementType, Semaphore> typePermits = new EnumMap<>(StatementType.class);
+
+    private final long maxWaitNanos;
+
+    Bulkhead(int maxConcurrentStatements,
+             Map<StatementType, Integer> maxConcurrentStatementsByType,
+             long maxWaitNanos) {
+        this.permits = maxConcurrentStatements > 0 ? new Semaphore(maxConcurrentStatements) : null;
+        maxConcurrentStatementsByType.forEach((type, max) -> typePermits.put(type, new Semaphore(max)));
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    void acquire(StatementType type) throws DaoRejectedException {
+        acquire(permits, "Too many concurrent statements");
+        try {
+            acquire(typePermits.get(type), "Too many concurrent " + type + " statements");
+        } catch (DaoRejectedException ex) {
+            release(permits);
+            throw ex;
+        }
+    }
+
+    void release(StatementType type) {
+        release(typePermits.get(type));
+        release(permits);
+    }
+
+    private void acquire(Semaphore semaphore, String message) {
+        if (semaphore == null || semaphore.tryAcquire()) {
+            return;
+        }
+        long waitNanos = maxWaitNanos;
+        Long remainingNanos = DaoDeadline.remainingNanos();
+        if (remainingNanos != null) {
+            waitNanos = Math.min(waitNanos, remainingNanos);
+        }
+        try {
+            if (waitNanos <= 0 || !semaphore.tryAcquire(waitNanos, TimeUnit.NANOSECONDS)) {
+                throw new DaoRejectedException(message);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DaoRejectedException("Interrupted while waiting for a statement permit", ex);
+        }
+    }
+
+    private static void release(Semaphore semaphore) {
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.rbkmoney.dao.impl;
+
+import java.time.Duration;
+
+public final class CachePolicy {
+
+    private final Duration ttl;
+
+    private CachePolicy(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public static CachePolicy ttl(Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Cache ttl must be positive");
+        }
+        return new CachePolicy(ttl);
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+}
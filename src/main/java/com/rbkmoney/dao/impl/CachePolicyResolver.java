@@ -0,0 +1,25 @@
+package com.rbkmoney.dao.impl;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+@FunctionalInterface
+public interface CachePolicyResolver {
+
+    /**
+     * Called once per distinct statement.
+     *
+     * @param tables names of the tables the statement reads
+     * @return the policy for the statement's results, null to not cache them
+     */
+    CachePolicy resolve(String namedSql, Set<String> tables);
+
+    /**
+     * Caches statements reading only the given tables.
+     */
+    static CachePolicyResolver forTables(CachePolicy policy, String... tableNames) {
+        Set<String> cachedTables = new HashSet<>(Arrays.asList(tableNames));
+        return (namedSql, tables) -> !tables.isEmpty() && cachedTables.containsAll(tables) ? policy : null;
+    }
+}
@@ -0,0 +1,114 @@
+package com.rbkmoney.dao.impl;
+
+import org.jooq.EnumType;
+import org.jooq.Field;
+import org.jooq.Record;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.Iterator;
+
+/**
+ * Encodes records in PostgreSQL COPY text format one row at a time, so only the current row is held in memory.
+ * Values are converted the same way as bind parameters: null bytes in strings are escaped as in
+ * {@link AbstractGenericDao#toSqlParameterSource}, enums are written by literal.
+ */
+class CopyRecordReader extends Reader {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Iterator<? extends Record> records;
+
+    private final Field<?>[] fields;
+
+    private final StringBuilder row = new StringBuilder();
+
+    private int position;
+
+    CopyRecordReader(Iterator<? extends Record> records, Field<?>[] fields) {
+        this.records = records;
+        this.fields = fields;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        int read = 0;
+        while (read < length) {
+            if (position == row.length()) {
+                if (!records.hasNext()) {
+                    break;
+                }
+                encode(records.next());
+            }
+            int count = Math.min(length - read, row.length() - position);
+            row.getChars(position, position + count, buffer, offset + read);
+            position += count;
+            read += count;
+        }
+        return read == 0 ? -1 : read;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void encode(Record record) {
+        row.setLength(0);
+        position = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                row.append('\t');
+            }
+            appendValue(record.get(fields[i]));
+        }
+        row.append('\n');
+    }
+
+    private void appendValue(Object value) {
+        if (value == null) {
+            row.append("\\N");
+        } else if (value instanceof String) {
+            appendEscaped(ParamSqlParameterSource.escapeNullBytes((String) value));
+        } else if (value instanceof EnumType) {
+            appendEscaped(((EnumType) value).getLiteral());
+        } else if (value instanceof byte[]) {
+            row.append("\\\\x");
+            for (byte b : (byte[]) value) {
+                row.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+            }
+        } else if (value instanceof Boolean) {
+            row.append((Boolean) value ? 't' : 'f');
+        } else if (value instanceof BigDecimal) {
+            row.append(((BigDecimal) value).toPlainString());
+        } else if (value.getClass().isArray()) {
+            throw new IllegalArgumentException("Array values are not supported by COPY: " + value.getClass());
+        } else {
+            appendEscaped(value.toString());
+        }
+    }
+
+    private void appendEscaped(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    row.append("\\\\");
+                    break;
+                case '\n':
+                    row.append("\\n");
+                    break;
+                case '\r':
+                    row.append("\\r");
+                    break;
+                case '\t':
+                    row.append("\\t");
+                    break;
+                default:
+                    row.append(c);
+            }
+        }
+    }
+}
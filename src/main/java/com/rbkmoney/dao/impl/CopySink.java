@@ -0,0 +1,13 @@
+package com.rbkmoney.dao.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface CopySink {
+
+    long copyIn(Connection connection, String copySql, Reader data) throws SQLException, IOException;
+
+}
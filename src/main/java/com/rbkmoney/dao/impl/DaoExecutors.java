@@ -0,0 +1,78 @@
+package com.rbkmoney.dao.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class DaoExecutors {
+
+    private DaoExecutors() {
+    }
+
+    /**
+     * Fixed size pool with a bounded queue. Tasks submitted when both the pool and the queue are full are rejected
+     * with {@link java.util.concurrent.RejectedExecutionException} instead of piling up.
+     */
+    public static ExecutorService newBoundedExecutor(String name, int threads, int queueCapacity) {
+        if (threads <= 0 || queueCapacity < 0) {
+            throw new IllegalArgumentException("Threads must be positive and queue capacity must not be negative");
+        }
+        BlockingQueue<Runnable> queue = queueCapacity > 0
+                ? new ArrayBlockingQueue<>(queueCapacity)
+                : new SynchronousQueue<>();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60L,
+                TimeUnit.SECONDS,
+                queue,
+                new NamedThreadFactory(name),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Runs each task on its own virtual thread with at most {@code maxConcurrency} tasks in flight, tasks over the
+     * limit are rejected. Falls back to {@link #newBoundedExecutor} with {@code maxConcurrency} threads and no queue
+     * on runtimes without virtual threads.
+     */
+    public static ExecutorService newVirtualThreadExecutor(String name, int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Max concurrency must be positive");
+        }
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            return new BoundedExecutorService(executor, maxConcurrency);
+        } catch (ReflectiveOperationException | UnsupportedOperationException ex) {
+            return newBoundedExecutor(name, maxConcurrency, 0);
+        }
+    }
+
+    static class NamedThreadFactory implements ThreadFactory {
+
+        private final String name;
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.dao.DaoDeadline;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lowers the query timeout of every statement to the time left until the {@link DaoDeadline} of the calling thread.
+ */
+class DeadlineJdbcTemplate extends JdbcTemplate {
+
+    DeadlineJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement statement) throws SQLException {
+        super.applyStatementSettings(statement);
+        applyDeadline(statement);
+    }
+
+    /**
+     * Applies the deadline to statements created outside of a {@link JdbcTemplate} callback.
+     */
+    static void applyDeadline(Statement statement) throws SQLException {
+        Long remainingNanos = DaoDeadline.remainingNanos();
+        if (remainingNanos != null) {
+            long second = TimeUnit.SECONDS.toNanos(1);
+            int timeout = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (remainingNanos + second - 1) / second));
+            int currentTimeout = statement.getQueryTimeout();
+            if (currentTimeout == 0 || timeout < currentTimeout) {
+                statement.setQueryTimeout(timeout);
+            }
+        }
+    }
+}
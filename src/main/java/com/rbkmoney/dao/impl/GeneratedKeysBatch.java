@@ -0,0 +1,112 @@
+package com.rbkmoney.dao.impl;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executes one named statement as a JDBC batch with {@link Statement#RETURN_GENERATED_KEYS}. The driver returns
+ * the key rows of all statements in one result set in statement order; they are split using the per-statement
+ * update counts so that {@code keys} gets one entry per parameter source, an empty map for statements that
+ * affected no rows. Statements affecting several rows, and collection params expanding to a different SQL per
+ * parameter source, are rejected with {@link InvalidDataAccessApiUsageException}.
+ */
+final class GeneratedKeysBatch {
+
+    private static final ColumnMapRowMapper KEY_ROW_MAPPER = new ColumnMapRowMapper();
+
+    private GeneratedKeysBatch() {
+    }
+
+    static int[] execute(Connection connection,
+                         String namedSql,
+                         List<SqlParameterSource> parameterSources,
+                         List<Map<String, Object>> keys) throws SQLException {
+        if (parameterSources.isEmpty()) {
+            return new int[0];
+        }
+        ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(namedSql);
+        String sql = NamedParameterUtils.substituteNamedParameters(parsedSql, parameterSources.get(0));
+        for (SqlParameterSource parameterSource : parameterSources) {
+            if (!sql.equals(NamedParameterUtils.substituteNamedParameters(parsedSql, parameterSource))) {
+                throw new InvalidDataAccessApiUsageException(
+                        "Collection params of a batch with generated keys must have the same size: " + namedSql);
+            }
+        }
+        PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        try {
+            DeadlineJdbcTemplate.applyDeadline(statement);
+            for (SqlParameterSource parameterSource : parameterSources) {
+                Object[] values = NamedParameterUtils.buildValueArray(parsedSql, parameterSource, null);
+                List<SqlParameter> parameters = NamedParameterUtils.buildSqlParameterList(parsedSql, parameterSource);
+                for (int i = 0; i < values.length; i++) {
+                    Object value = values[i];
+                    SqlParameter parameter = parameters.get(i);
+                    if (value instanceof SqlParameterValue) {
+                        parameter = (SqlParameterValue) value;
+                        value = ((SqlParameterValue) value).getValue();
+                    }
+                    StatementCreatorUtils.setParameterValue(statement, i + 1, parameter, value);
+                }
+                statement.addBatch();
+            }
+            int[] rowsAffected = statement.executeBatch();
+            List<Map<String, Object>> keyRows = new ArrayList<>(rowsAffected.length);
+            ResultSet generatedKeys = statement.getGeneratedKeys();
+            try {
+                while (generatedKeys.next()) {
+                    keyRows.add(KEY_ROW_MAPPER.mapRow(generatedKeys, keyRows.size()));
+                }
+            } finally {
+                JdbcUtils.closeResultSet(generatedKeys);
+            }
+            splitKeys(namedSql, rowsAffected, keyRows, keys);
+            return rowsAffected;
+        } finally {
+            StatementCreatorUtils.cleanupParameters(parameterSources);
+            JdbcUtils.closeStatement(statement);
+        }
+    }
+
+    private static void splitKeys(String namedSql,
+                                  int[] rowsAffected,
+                                  List<Map<String, Object>> keyRows,
+                                  List<Map<String, Object>> keys) {
+        boolean countsKnown = true;
+        int expectedKeyRows = 0;
+        for (int count : rowsAffected) {
+            if (count == Statement.SUCCESS_NO_INFO) {
+                countsKnown = false;
+            } else if (count == 0 || count == 1) {
+                expectedKeyRows += count;
+            } else {
+                throw new InvalidDataAccessApiUsageException(
+                        "Statement of a batch with generated keys affected " + count + " rows: " + namedSql);
+            }
+        }
+        if (countsKnown ? keyRows.size() != expectedKeyRows : keyRows.size() != rowsAffected.length) {
+            throw new InvalidDataAccessApiUsageException("Batch with generated keys returned " + keyRows.size()
+                    + " key rows for " + rowsAffected.length + " statements: " + namedSql);
+        }
+        int keyRow = 0;
+        for (int count : rowsAffected) {
+            keys.add(count == 0 ? Collections.emptyMap() : keyRows.get(keyRow++));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.rbkmoney.dao.impl;
+
+import org.jooq.Comparator;
+import org.jooq.DataType;
+import org.jooq.Field;
+import org.jooq.Param;
+import org.jooq.QueryPart;
+import org.jooq.VisitContext;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultVisitListener;
+
+import java.lang.reflect.Array;
+
+/**
+ * Renders {@code field in (:1, :2, ...)} as {@code field = any(:1)} and {@code not in} as {@code <> all(:1)} with
+ * a single array bind value, so the statement text does not depend on the list size. Lists containing inlined
+ * values or expressions other than bind values are left as they are, and so are lists compared with fields of
+ * unknown (plain SQL), enum, UDT or array types, which have no array type to cast the bind value to.
+ */
+class InListArrayRewriter extends DefaultVisitListener {
+
+    private static final String IN_CONDITION = "org.jooq.impl.InCondition";
+
+    private static final java.lang.reflect.Field FIELD;
+
+    private static final java.lang.reflect.Field VALUES;
+
+    private static final java.lang.reflect.Field COMPARATOR;
+
+    static {
+        try {
+            Class<?> inCondition = Class.forName(IN_CONDITION);
+            FIELD = accessible(inCondition.getDeclaredField("field"));
+            VALUES = accessible(inCondition.getDeclaredField("values"));
+            COMPARATOR = accessible(inCondition.getDeclaredField("comparator"));
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Unsupported jOOQ version, failed to access " + IN_CONDITION, ex);
+        }
+    }
+
+    @Override
+    public void visitStart(VisitContext context) {
+        QueryPart part = context.queryPart();
+        if (IN_CONDITION.equals(part.getClass().getName())) {
+            QueryPart rewritten = rewrite(part);
+            if (rewritten != null) {
+                context.queryPart(rewritten);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static QueryPart rewrite(QueryPart inCondition) {
+        try {
+            Field<Object> field = (Field<Object>) FIELD.get(inCondition);
+            Field<?>[] values = (Field<?>[]) VALUES.get(inCondition);
+            Comparator comparator = (Comparator) COMPARATOR.get(inCondition);
+            Class<?> type = field.getType();
+            DataType<Object> dataType = field.getDataType();
+            if (values.length == 0 || type == Object.class || dataType.isArray() || dataType.isEnum()
+                    || dataType.isUDT()) {
+                return null;
+            }
+            Object[] array = (Object[]) Array.newInstance(type, values.length);
+            for (int i = 0; i < values.length; i++) {
+                if (!(values[i] instanceof Param) || ((Param<?>) values[i]).isInline()) {
+                    return null;
+                }
+                array[i] = ((Param<?>) values[i]).getValue();
+            }
+            Param<Object[]> param = DSL.val(array, dataType.getArrayDataType());
+            return comparator == Comparator.IN
+                    ? field.eq(DSL.any(param))
+                    : field.ne(DSL.all(param));
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("Failed to read " + IN_CONDITION, ex);
+        }
+    }
+
+    private static java.lang.reflect.Field accessible(java.lang.reflect.Field field) {
+        field.setAccessible(true);
+        return field;
+    }
+}
@@ -0,0 +1,80 @@
+package com.rbkmoney.dao.impl;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+
+/**
+ * Fetches pages lazily, seeking past the key of the last row of the previous page.
+ * Key columns are read only from the last row of a full page, a shorter page ends the iteration.
+ */
+class KeysetPageIterator<T> implements Iterator<List<T>> {
+
+    private final String[] keyNames;
+
+    private final Class<?>[] keyTypes;
+
+    private final int pageSize;
+
+    private final RowMapper<T> rowMapper;
+
+    private final BiFunction<Object[], RowMapper<T>, List<T>> pageFetcher;
+
+    private Object[] lastKey;
+
+    private List<T> nextPage;
+
+    private boolean finished;
+
+    KeysetPageIterator(String[] keyNames,
+                       Class<?>[] keyTypes,
+                       int pageSize,
+                       RowMapper<T> rowMapper,
+                       BiFunction<Object[], RowMapper<T>, List<T>> pageFetcher) {
+        this.keyNames = keyNames;
+        this.keyTypes = keyTypes;
+        this.pageSize = pageSize;
+        this.rowMapper = rowMapper;
+        this.pageFetcher = pageFetcher;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextPage == null && !finished) {
+            Object[] pageLastKey = new Object[keyNames.length];
+            List<T> page = pageFetcher.apply(lastKey, (rs, rowNum) -> mapRow(rs, rowNum, pageLastKey));
+            if (page.size() < pageSize) {
+                finished = true;
+            } else {
+                lastKey = pageLastKey;
+            }
+            nextPage = page.isEmpty() ? null : page;
+        }
+        return nextPage != null;
+    }
+
+    @Override
+    public List<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<T> page = nextPage;
+        nextPage = null;
+        return page;
+    }
+
+    private T mapRow(ResultSet rs, int rowNum, Object[] pageLastKey) throws SQLException {
+        T value = rowMapper.mapRow(rs, rowNum);
+        if (rowNum == pageSize - 1) {
+            for (int i = 0; i < keyNames.length; i++) {
+                pageLastKey[i] = rs.getObject(keyNames[i], keyTypes[i]);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,133 @@
+package com.rbkmoney.dao.impl;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites a single-row {@code insert ... values (...)} statement into a multi-row one.
+ * Only plain inserts, optionally with {@code on conflict ... do nothing}, are accepted: anything returning rows
+ * or updating on conflict keeps its per-row semantics and is not rewritten.
+ */
+class MultiRowInsert {
+
+    static final int MAX_PARAMETERS = Short.MAX_VALUE;
+
+    private static final Pattern INSERT_PATTERN = Pattern.compile(
+            "^\\s*(insert\\s+into\\s+.+?\\s+values\\s*)\\((.*)\\)(\\s+on\\s+conflict\\b.*\\bdo\\s+nothing)?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL
+    );
+
+    private static final Pattern PARAMETER_PATTERN = Pattern.compile("(?<!:):([A-Za-z0-9_]+)");
+
+    private final String head;
+
+    private final String[] tupleParts;
+
+    private final String[] parameterNames;
+
+    private final String tail;
+
+    private MultiRowInsert(String head, String[] tupleParts, String[] parameterNames, String tail) {
+        this.head = head;
+        this.tupleParts = tupleParts;
+        this.parameterNames = parameterNames;
+        this.tail = tail;
+    }
+
+    static MultiRowInsert parse(String namedSql) {
+        Matcher matcher = INSERT_PATTERN.matcher(namedSql);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String tuple = matcher.group(2);
+        if (tuple.indexOf('\'') >= 0 || tuple.indexOf('"') >= 0 || !isBalanced(tuple)) {
+            return null;
+        }
+
+        List<String> tupleParts = new ArrayList<>();
+        List<String> parameterNames = new ArrayList<>();
+        Matcher parameterMatcher = PARAMETER_PATTERN.matcher(tuple);
+        int position = 0;
+        while (parameterMatcher.find()) {
+            tupleParts.add(tuple.substring(position, parameterMatcher.start()));
+            parameterNames.add(parameterMatcher.group(1));
+            position = parameterMatcher.end();
+        }
+        tupleParts.add(tuple.substring(position));
+        if (parameterNames.isEmpty()) {
+            return null;
+        }
+
+        return new MultiRowInsert(
+                matcher.group(1),
+                tupleParts.toArray(new String[0]),
+                parameterNames.toArray(new String[0]),
+                matcher.group(3) != null ? matcher.group(3) : ""
+        );
+    }
+
+    boolean isConflictIgnored() {
+        return !tail.isEmpty();
+    }
+
+    int getMaxRows() {
+        return Math.max(1, MAX_PARAMETERS / parameterNames.length);
+    }
+
+    String getSql(int rows) {
+        StringBuilder sql = new StringBuilder(head);
+        for (int row = 0; row < rows; row++) {
+            if (row > 0) {
+                sql.append(", ");
+            }
+            sql.append('(');
+            for (int i = 0; i < parameterNames.length; i++) {
+                sql.append(tupleParts[i]).append(':').append(rowParameterName(parameterNames[i], row));
+            }
+            sql.append(tupleParts[parameterNames.length]).append(')');
+        }
+        return sql.append(tail).toString();
+    }
+
+    SqlParameterSource getParameterSource(List<SqlParameterSource> parameterSources) {
+        MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        for (int row = 0; row < parameterSources.size(); row++) {
+            SqlParameterSource rowParameterSource = parameterSources.get(row);
+            for (String parameterName : parameterNames) {
+                String name = rowParameterName(parameterName, row);
+                parameterSource.addValue(name, rowParameterSource.getValue(parameterName));
+                int sqlType = rowParameterSource.getSqlType(parameterName);
+                if (sqlType != SqlParameterSource.TYPE_UNKNOWN) {
+                    parameterSource.registerSqlType(name, sqlType);
+                }
+                String typeName = rowParameterSource.getTypeName(parameterName);
+                if (typeName != null) {
+                    parameterSource.registerTypeName(name, typeName);
+                }
+            }
+        }
+        return parameterSource;
+    }
+
+    private static String rowParameterName(String parameterName, int row) {
+        return parameterName + "_" + row;
+    }
+
+    private static boolean isBalanced(String tuple) {
+        int depth = 0;
+        for (int i = 0; i < tuple.length(); i++) {
+            char c = tuple.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth < 0) {
+                return false;
+            }
+        }
+        return depth == 0;
+    }
+}
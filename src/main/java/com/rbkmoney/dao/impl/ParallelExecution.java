@@ -0,0 +1,153 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.dao.DaoDeadline;
+import com.rbkmoney.dao.DaoException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Runs independent tasks on an executor with at most {@code parallelism} of them in flight and returns their
+ * results in task order. Once a task fails no further tasks are started; tasks already running are awaited, and
+ * the first failure is thrown with the others attached as suppressed exceptions.
+ */
+final class ParallelExecution {
+
+    private ParallelExecution() {
+    }
+
+    static <R> List<R> invokeAll(Executor executor, int parallelism, List<? extends Callable<R>> tasks)
+            throws DaoException {
+        Semaphore permits = new Semaphore(parallelism);
+        List<CompletableFuture<R>> futures = new ArrayList<>(tasks.size());
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (Callable<R> task : tasks) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                failures.add(ex);
+                break;
+            }
+            if (!failures.isEmpty()) {
+                permits.release();
+                break;
+            }
+
+            CompletableFuture<R> future = new CompletableFuture<>();
+            try {
+                executor.execute(DaoDeadline.propagate(() -> {
+                    try {
+                        future.complete(task.call());
+                    } catch (Throwable ex) {
+                        failures.add(ex);
+                        future.completeExceptionally(ex);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            } catch (RejectedExecutionException ex) {
+                permits.release();
+                failures.add(ex);
+                break;
+            }
+            futures.add(future);
+        }
+
+        List<R> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<R> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException ex) {
+                // collected in failures
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            throw toDaoException(failures);
+        }
+        return results;
+    }
+
+    /**
+     * Same as {@link #invokeAll}, but hands each result to {@code consumer} on the calling thread as soon as its
+     * task completes. A failing consumer stops further tasks like a failing task does.
+     */
+    static <R> void invokeUnordered(Executor executor,
+                                    int parallelism,
+                                    List<? extends Callable<R>> tasks,
+                                    Consumer<? super R> consumer) throws DaoException {
+        BlockingQueue<CompletableFuture<R>> completed = new LinkedBlockingQueue<>();
+        List<Throwable> failures = new ArrayList<>();
+        int next = 0;
+        int running = 0;
+        while (true) {
+            while (failures.isEmpty() && running < parallelism && next < tasks.size()) {
+                Callable<R> task = tasks.get(next++);
+                CompletableFuture<R> future = new CompletableFuture<>();
+                try {
+                    executor.execute(DaoDeadline.propagate(() -> {
+                        try {
+                            future.complete(task.call());
+                        } catch (Throwable ex) {
+                            future.completeExceptionally(ex);
+                        } finally {
+                            completed.add(future);
+                        }
+                    }));
+                    running++;
+                } catch (RejectedExecutionException ex) {
+                    failures.add(ex);
+                }
+            }
+            if (running == 0) {
+                break;
+            }
+
+            CompletableFuture<R> future;
+            try {
+                future = completed.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                failures.add(ex);
+                break;
+            }
+            running--;
+            try {
+                R result = future.join();
+                if (failures.isEmpty()) {
+                    consumer.accept(result);
+                }
+            } catch (CompletionException ex) {
+                failures.add(ex.getCause());
+            } catch (RuntimeException ex) {
+                failures.add(ex);
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            throw toDaoException(failures);
+        }
+    }
+
+    private static DaoException toDaoException(List<Throwable> failures) {
+        Throwable first = failures.get(0);
+        DaoException daoException = first instanceof DaoException
+                ? (DaoException) first
+                : new DaoException("Parallel execution failed", first);
+        for (int i = 1; i < failures.size(); i++) {
+            daoException.addSuppressed(failures.get(i));
+        }
+        return daoException;
+    }
+}
@@ -0,0 +1,196 @@
+package com.rbkmoney.dao.impl;
+
+import org.jooq.EnumType;
+import org.jooq.Param;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Array backed replacement for {@code MapSqlParameterSource} built from jOOQ params.
+ * Lookups first try the slot after the previous one, since named sql is expanded in param order.
+ */
+class ParamSqlParameterSource implements SqlParameterSource {
+
+    private static final ClassValue<ParamKind> PARAM_KINDS = new ClassValue<ParamKind>() {
+        @Override
+        protected ParamKind computeValue(Class<?> type) {
+            if (String.class.isAssignableFrom(type)) {
+                return ParamKind.STRING;
+            }
+            if (LocalDateTime.class.isAssignableFrom(type) || EnumType.class.isAssignableFrom(type)) {
+                return ParamKind.OTHER;
+            }
+            if (type.isArray() && type != byte[].class) {
+                return ParamKind.ARRAY;
+            }
+            return ParamKind.PLAIN;
+        }
+    };
+
+    private final String[] names;
+
+    private final Object[] values;
+
+    private final int[] sqlTypes;
+
+    private int lastIndex = -1;
+
+    private ParamSqlParameterSource(String[] names, Object[] values, int[] sqlTypes) {
+        this.names = names;
+        this.values = values;
+        this.sqlTypes = sqlTypes;
+    }
+
+    static ParamSqlParameterSource of(Map<String, Param<?>> params) {
+        return of(params, false);
+    }
+
+    /**
+     * @param sqlArrays bind array values as {@link java.sql.Array} created by the connection
+     */
+    static ParamSqlParameterSource of(Map<String, Param<?>> params, boolean sqlArrays) {
+        int size = params.size();
+        String[] names = new String[size];
+        Object[] values = new Object[size];
+        int[] sqlTypes = new int[size];
+        int index = 0;
+        for (Map.Entry<String, Param<?>> entry : params.entrySet()) {
+            Param<?> param = entry.getValue();
+            Object value = param.getValue();
+            int sqlType = TYPE_UNKNOWN;
+            switch (PARAM_KINDS.get(param.getDataType().getType())) {
+                case STRING:
+                    value = value != null ? escapeNullBytes((String) value) : null;
+                    break;
+                case OTHER:
+                    sqlType = Types.OTHER;
+                    break;
+                case ARRAY:
+                    if (sqlArrays && value != null) {
+                        value = new SqlArrayValue(param.getDataType().getTypeName(), (Object[]) value);
+                        sqlType = Types.ARRAY;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            names[index] = entry.getKey();
+            values[index] = value;
+            sqlTypes[index] = sqlType;
+            index++;
+        }
+        return new ParamSqlParameterSource(names, values, sqlTypes);
+    }
+
+    static String escapeNullBytes(String value) {
+        return value.indexOf('\u0000') < 0 ? value : value.replace("\u0000", "\\u0000");
+    }
+
+    @Override
+    public boolean hasValue(String paramName) {
+        return indexOf(paramName) >= 0;
+    }
+
+    @Override
+    public Object getValue(String paramName) throws IllegalArgumentException {
+        int index = indexOf(paramName);
+        if (index < 0) {
+            throw new IllegalArgumentException("No value registered for key '" + paramName + "'");
+        }
+        return values[index];
+    }
+
+    @Override
+    public int getSqlType(String paramName) {
+        int index = indexOf(paramName);
+        return index >= 0 ? sqlTypes[index] : TYPE_UNKNOWN;
+    }
+
+    @Override
+    public String getTypeName(String paramName) {
+        return null;
+    }
+
+    @Override
+    public String[] getParameterNames() {
+        return names.clone();
+    }
+
+    private int indexOf(String paramName) {
+        int next = lastIndex + 1;
+        if (next < names.length && names[next].equals(paramName)) {
+            lastIndex = next;
+            return next;
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(paramName)) {
+                lastIndex = i;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class SqlArrayValue implements SqlTypeValue {
+
+        private final String elementTypeName;
+
+        private final Object[] elements;
+
+        SqlArrayValue(String arrayTypeName, Object[] elements) {
+            this.elementTypeName = arrayTypeName.endsWith("[]")
+                    ? arrayTypeName.substring(0, arrayTypeName.length() - 2)
+                    : arrayTypeName;
+            this.elements = elements;
+        }
+
+        @Override
+        public void setTypeValue(PreparedStatement ps, int paramIndex, int sqlType, String typeName)
+                throws SQLException {
+            Object[] values = elements;
+            if (values instanceof EnumType[]) {
+                values = new String[elements.length];
+                for (int i = 0; i < elements.length; i++) {
+                    values[i] = elements[i] != null ? ((EnumType) elements[i]).getLiteral() : null;
+                }
+            }
+            ps.setArray(paramIndex, ps.getConnection().createArrayOf(elementTypeName, values));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SqlArrayValue)) {
+                return false;
+            }
+            SqlArrayValue that = (SqlArrayValue) o;
+            return elementTypeName.equals(that.elementTypeName) && Arrays.equals(elements, that.elements);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * elementTypeName.hashCode() + Arrays.hashCode(elements);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(elements);
+        }
+    }
+
+    private enum ParamKind {
+        STRING,
+        OTHER,
+        ARRAY,
+        PLAIN
+    }
+}
@@ -0,0 +1,79 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.dao.DaoDeadline;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The copy API has no query timeout, so under a {@link DaoDeadline} the {@code statement_timeout} of the session
+ * is lowered to the remaining time for the copy: transaction-locally inside a transaction, otherwise it is
+ * restored afterwards.
+ */
+class PgCopySink implements CopySink {
+
+    static final PgCopySink INSTANCE = new PgCopySink();
+
+    @Override
+    public long copyIn(Connection connection, String copySql, Reader data) throws SQLException, IOException {
+        Long remainingNanos = DaoDeadline.remainingNanos();
+        if (remainingNanos == null) {
+            return copy(connection, copySql, data);
+        }
+        long timeoutMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+        String currentTimeout = statementTimeout(connection);
+        long currentTimeoutMillis = Long.parseLong(currentTimeout);
+        if (currentTimeoutMillis != 0 && currentTimeoutMillis <= timeoutMillis) {
+            return copy(connection, copySql, data);
+        }
+        boolean local = !connection.getAutoCommit();
+        setStatementTimeout(connection, Long.toString(timeoutMillis), local);
+        try {
+            return copy(connection, copySql, data);
+        } finally {
+            if (!local) {
+                setStatementTimeout(connection, currentTimeout, false);
+            }
+        }
+    }
+
+    private static long copy(Connection connection, String copySql, Reader data) throws SQLException, IOException {
+        return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql, data);
+    }
+
+    /**
+     * @return the current timeout in milliseconds, 0 for none
+     */
+    private static String statementTimeout(Connection connection) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(
+                "select setting from pg_settings where name = 'statement_timeout'");
+        ResultSet resultSet = null;
+        try {
+            resultSet = statement.executeQuery();
+            resultSet.next();
+            return resultSet.getString(1);
+        } finally {
+            JdbcUtils.closeResultSet(resultSet);
+            JdbcUtils.closeStatement(statement);
+        }
+    }
+
+    private static void setStatementTimeout(Connection connection, String timeoutMillis, boolean local)
+            throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("select set_config('statement_timeout', ?, ?)");
+        try {
+            statement.setString(1, timeoutMillis);
+            statement.setBoolean(2, local);
+            statement.execute();
+        } finally {
+            JdbcUtils.closeStatement(statement);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.rbkmoney.dao.impl;
+
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Joins several named select statements into one multi-statement prepared statement, so that PostgreSQL
+ * receives all of them in a single round trip, and maps the result sets in statement order.
+ */
+final class PipelinedFetch {
+
+    static final String STATEMENT_SEPARATOR = ";\n";
+
+    private PipelinedFetch() {
+    }
+
+    static List<List<?>> fetch(JdbcTemplate jdbcTemplate,
+                               List<String> namedSqls,
+                               List<SqlParameterSource> parameterSources,
+                               List<RowMapper<?>> rowMappers) {
+        StringBuilder sql = new StringBuilder();
+        List<SqlParameter> parameters = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < namedSqls.size(); i++) {
+            ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(namedSqls.get(i));
+            SqlParameterSource parameterSource = parameterSources.get(i);
+            if (i > 0) {
+                sql.append(STATEMENT_SEPARATOR);
+            }
+            sql.append(NamedParameterUtils.substituteNamedParameters(parsedSql, parameterSource));
+            parameters.addAll(NamedParameterUtils.buildSqlParameterList(parsedSql, parameterSource));
+            values.addAll(Arrays.asList(NamedParameterUtils.buildValueArray(parsedSql, parameterSource, null)));
+        }
+
+        PreparedStatementCreatorFactory statementCreatorFactory =
+                new PreparedStatementCreatorFactory(sql.toString(), parameters);
+        return jdbcTemplate.execute(
+                statementCreatorFactory.newPreparedStatementCreator(values),
+                (PreparedStatement statement) -> {
+                    List<List<?>> rows = new ArrayList<>(rowMappers.size());
+                    boolean hasResultSet = statement.execute();
+                    for (RowMapper<?> rowMapper : rowMappers) {
+                        while (!hasResultSet) {
+                            if (statement.getUpdateCount() == -1) {
+                                throw new IncorrectResultSizeDataAccessException(
+                                        "Expected " + rowMappers.size() + " result sets, got " + rows.size(),
+                                        rowMappers.size(),
+                                        rows.size()
+                                );
+                            }
+                            hasResultSet = statement.getMoreResults();
+                        }
+                        ResultSet resultSet = statement.getResultSet();
+                        try {
+                            rows.add(new RowMapperResultSetExtractor<>(rowMapper).extractData(resultSet));
+                        } finally {
+                            JdbcUtils.closeResultSet(resultSet);
+                        }
+                        hasResultSet = statement.getMoreResults();
+                    }
+                    return rows;
+                }
+        );
+    }
+}
@@ -0,0 +1,97 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.dao.ColumnType;
+import com.rbkmoney.dao.PrimitiveColumns;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Reads the leading columns of a result set into growable primitive arrays with the primitive getters,
+ * so no value is boxed.
+ */
+class PrimitiveColumnsExtractor implements ResultSetExtractor<PrimitiveColumns> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ColumnType[] columnTypes;
+
+    PrimitiveColumnsExtractor(ColumnType[] columnTypes) {
+        if (columnTypes.length == 0) {
+            throw new IllegalArgumentException("At least one column type is required");
+        }
+        this.columnTypes = columnTypes.clone();
+    }
+
+    @Override
+    public PrimitiveColumns extractData(ResultSet rs) throws SQLException {
+        int columnCount = columnTypes.length;
+        Object[] columns = new Object[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            columns[column] = newColumn(columnTypes[column], INITIAL_CAPACITY);
+        }
+        BitSet[] nulls = new BitSet[columnCount];
+        int capacity = INITIAL_CAPACITY;
+        int size = 0;
+        while (rs.next()) {
+            if (size == capacity) {
+                capacity = capacity * 2;
+                for (int column = 0; column < columnCount; column++) {
+                    columns[column] = resize(columns[column], capacity);
+                }
+            }
+            for (int column = 0; column < columnCount; column++) {
+                int columnIndex = column + 1;
+                switch (columnTypes[column]) {
+                    case LONG:
+                        ((long[]) columns[column])[size] = rs.getLong(columnIndex);
+                        break;
+                    case INT:
+                        ((int[]) columns[column])[size] = rs.getInt(columnIndex);
+                        break;
+                    default:
+                        ((double[]) columns[column])[size] = rs.getDouble(columnIndex);
+                        break;
+                }
+                if (rs.wasNull()) {
+                    if (nulls[column] == null) {
+                        nulls[column] = new BitSet();
+                    }
+                    nulls[column].set(size);
+                }
+            }
+            size++;
+        }
+        for (int column = 0; column < columnCount; column++) {
+            columns[column] = resize(columns[column], size);
+        }
+        return new PrimitiveColumns(columnTypes, columns, nulls, size);
+    }
+
+    private static Object newColumn(ColumnType columnType, int capacity) {
+        switch (columnType) {
+            case LONG:
+                return new long[capacity];
+            case INT:
+                return new int[capacity];
+            default:
+                return new double[capacity];
+        }
+    }
+
+    private static Object resize(Object column, int length) {
+        if (column instanceof long[]) {
+            long[] values = (long[]) column;
+            return values.length == length ? values : Arrays.copyOf(values, length);
+        }
+        if (column instanceof int[]) {
+            int[] values = (int[]) column;
+            return values.length == length ? values : Arrays.copyOf(values, length);
+        }
+        double[] values = (double[]) column;
+        return values.length == length ? values : Arrays.copyOf(values, length);
+    }
+}
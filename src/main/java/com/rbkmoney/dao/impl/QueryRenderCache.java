@@ -0,0 +1,56 @@
+package com.rbkmoney.dao.impl;
+
+import org.jooq.Query;
+import org.jooq.conf.ParamType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU of named SQL keyed by a caller-supplied query shape. Queries of the same shape only differ in bind
+ * values, so a shape is rendered once and later queries of it only have their params extracted.
+ */
+class QueryRenderCache {
+
+    private final Map<Object, String> cache;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    QueryRenderCache(int maxSize) {
+        this.cache = new LinkedHashMap<Object, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    String namedSql(Object shapeKey, Query query) {
+        String namedSql;
+        synchronized (cache) {
+            namedSql = cache.get(shapeKey);
+        }
+        if (namedSql != null) {
+            hits.increment();
+            return namedSql;
+        }
+
+        misses.increment();
+        namedSql = query.getSQL(ParamType.NAMED);
+        synchronized (cache) {
+            cache.put(shapeKey, namedSql);
+        }
+        return namedSql;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+}
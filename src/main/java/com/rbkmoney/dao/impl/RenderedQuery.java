@@ -0,0 +1,31 @@
+package com.rbkmoney.dao.impl;
+
+import org.jooq.Param;
+import org.jooq.Query;
+import org.jooq.conf.ParamType;
+
+import java.util.Map;
+
+class RenderedQuery {
+
+    private final String namedSql;
+
+    private final Map<String, Param<?>> params;
+
+    RenderedQuery(String namedSql, Map<String, Param<?>> params) {
+        this.namedSql = namedSql;
+        this.params = params;
+    }
+
+    static RenderedQuery of(Query query) {
+        return new RenderedQuery(query.getSQL(ParamType.NAMED), query.getParams());
+    }
+
+    String getNamedSql() {
+        return namedSql;
+    }
+
+    Map<String, Param<?>> getParams() {
+        return params;
+    }
+}
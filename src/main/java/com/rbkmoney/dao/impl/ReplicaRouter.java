@@ -0,0 +1,139 @@
+package com.rbkmoney.dao.impl;
+
+import org.springframework.core.NestedRuntimeException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Picks a replica template for reads. Replicas whose replication lag exceeds the configured maximum are
+ * skipped. The lag is queried on the lag check executor at most once per check interval per replica, so readers
+ * never wait for it: they use the last known value, and replicas whose lag is unknown yet or failed to be
+ * queried are skipped.
+ */
+class ReplicaRouter {
+
+    static final String REPLICATION_LAG_SQL = "select case" +
+            " when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0" +
+            " else coalesce((extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000)::bigint, 0)" +
+            " end";
+
+    private final List<Replica> replicas;
+
+    private final ReplicaSelection selection;
+
+    private final long maxLagMillis;
+
+    private final long lagCheckIntervalNanos;
+
+    private final Executor lagCheckExecutor;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    ReplicaRouter(List<NamedParameterJdbcTemplate> templates,
+                  ReplicaSelection selection,
+                  Duration maxLag,
+                  Duration lagCheckInterval,
+                  Executor lagCheckExecutor) {
+        this.replicas = templates.stream().map(Replica::new).collect(Collectors.toList());
+        this.selection = selection;
+        this.maxLagMillis = maxLag != null ? maxLag.toMillis() : -1;
+        this.lagCheckIntervalNanos = lagCheckInterval.toNanos();
+        this.lagCheckExecutor = lagCheckExecutor;
+    }
+
+    <R> R read(Function<NamedParameterJdbcTemplate, R> read, NamedParameterJdbcTemplate primary) {
+        Replica replica = select();
+        if (replica == null) {
+            return read.apply(primary);
+        }
+        replica.inFlight.incrementAndGet();
+        try {
+            return read.apply(replica.template);
+        } finally {
+            replica.inFlight.decrementAndGet();
+        }
+    }
+
+    NamedParameterJdbcTemplate select(NamedParameterJdbcTemplate primary) {
+        Replica replica = select();
+        return replica != null ? replica.template : primary;
+    }
+
+    private Replica select() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        Replica selected = null;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!isAvailable(replica)) {
+                continue;
+            }
+            if (selection == ReplicaSelection.ROUND_ROBIN) {
+                return replica;
+            }
+            if (selected == null || replica.inFlight.get() < selected.inFlight.get()) {
+                selected = replica;
+            }
+        }
+        return selected;
+    }
+
+    private boolean isAvailable(Replica replica) {
+        if (maxLagMillis < 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if ((replica.lagCheckedAt == 0 || now - replica.lagCheckedAt >= lagCheckIntervalNanos)
+                && replica.refreshing.compareAndSet(false, true)) {
+            try {
+                lagCheckExecutor.execute(() -> refreshLag(replica));
+            } catch (RejectedExecutionException ex) {
+                replica.refreshing.set(false);
+            }
+        }
+        return replica.lagCheckedAt != 0 && replica.lagMillis <= maxLagMillis;
+    }
+
+    private static void refreshLag(Replica replica) {
+        try {
+            replica.lagMillis = queryLag(replica.template);
+            replica.lagCheckedAt = System.nanoTime();
+        } finally {
+            replica.refreshing.set(false);
+        }
+    }
+
+    private static long queryLag(NamedParameterJdbcTemplate template) {
+        try {
+            Long lag = template.getJdbcTemplate().queryForObject(REPLICATION_LAG_SQL, Long.class);
+            return lag != null ? lag : 0;
+        } catch (NestedRuntimeException ex) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static class Replica {
+
+        private final NamedParameterJdbcTemplate template;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private volatile long lagMillis;
+
+        private volatile long lagCheckedAt;
+
+        Replica(NamedParameterJdbcTemplate template) {
+            this.template = template;
+        }
+    }
+}
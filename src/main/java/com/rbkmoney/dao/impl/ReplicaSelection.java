@@ -0,0 +1,12 @@
+package com.rbkmoney.dao.impl;
+
+public enum ReplicaSelection {
+
+    ROUND_ROBIN,
+
+    /**
+     * Picks the replica with the fewest reads in flight from this dao.
+     */
+    LEAST_LOADED
+
+}
@@ -0,0 +1,360 @@
+package com.rbkmoney.dao.impl;
+
+import org.jooq.Configuration;
+import org.jooq.Query;
+import org.jooq.QueryPart;
+import org.jooq.SQL;
+import org.jooq.SQLDialect;
+import org.jooq.Select;
+import org.jooq.Table;
+import org.jooq.VisitContext;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultVisitListener;
+import org.jooq.impl.DefaultVisitListenerProvider;
+import org.jooq.impl.TableImpl;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU of {@code fetchOne}/{@code fetch} results keyed by named SQL, bound values and row mapper.
+ * Only {@link Select} queries are cached, writes fetched with {@code returning} always execute and invalidate.
+ * <p>
+ * The tables a statement touches are taken from the jOOQ query the first time it is rendered. Every write
+ * executed through the dao bumps a generation counter of the tables it touches, or of all tables when they
+ * are unknown (plain SQL), and cached results loaded before the bump are treated as missing. Writes made
+ * outside the dao are only picked up when the ttl expires. Cached objects are shared between callers and
+ * must not be modified.
+ */
+public class ResultCache {
+
+    private static final int MAX_STATEMENTS = 4096;
+
+    private static final Object NULL = new Object();
+
+    private final CachePolicyResolver policyResolver;
+
+    private final Map<Key, Entry> entries;
+
+    private final ConcurrentMap<String, Statement> statements = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, AtomicLong> tableGenerations = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public ResultCache(int maxSize, CachePolicyResolver policyResolver) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Result cache size must be positive");
+        }
+        this.policyResolver = policyResolver;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    void register(String namedSql, Query query) {
+        if (!statements.containsKey(namedSql)) {
+            Set<String> tables = tablesOf(query);
+            CachePolicy policy = tables != null && query instanceof Select
+                    ? policyResolver.resolve(namedSql, Collections.unmodifiableSet(tables))
+                    : null;
+            put(namedSql, new Statement(
+                    tables != null ? tables.toArray(new String[0]) : null,
+                    query instanceof Select,
+                    policy
+            ));
+        }
+    }
+
+    /**
+     * Registers a write that is not built as a jOOQ query, such as {@code copy}, with the tables it touches.
+     */
+    void registerWrite(String sql, String... tables) {
+        if (!statements.containsKey(sql)) {
+            put(sql, new Statement(tables, false, null));
+        }
+    }
+
+    /**
+     * Registers statements executed together as {@code namedSql}, each of them registered before.
+     */
+    void registerAll(String namedSql, List<String> namedSqls) {
+        if (statements.containsKey(namedSql)) {
+            return;
+        }
+        Set<String> tables = new LinkedHashSet<>();
+        boolean select = true;
+        for (String statementSql : namedSqls) {
+            Statement statement = statements.get(statementSql);
+            if (statement == null) {
+                return;
+            }
+            select &= statement.select;
+            if (statement.tables == null) {
+                tables = null;
+            } else if (tables != null) {
+                tables.addAll(Arrays.asList(statement.tables));
+            }
+        }
+        put(namedSql, new Statement(tables != null ? tables.toArray(new String[0]) : null, select, null));
+    }
+
+    /**
+     * Tells whether the statement may change data: registered queries other than {@link Select}s, and unregistered
+     * SQL that is not a plain select.
+     */
+    boolean isWrite(String namedSql) {
+        Statement statement = statements.get(namedSql);
+        return statement != null ? !statement.select : !SelectStatements.isSelect(namedSql);
+    }
+
+    private void put(String namedSql, Statement statement) {
+        if (statements.size() >= MAX_STATEMENTS) {
+            statements.clear();
+        }
+        statements.put(namedSql, statement);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T get(Object kind, String namedSql, SqlParameterSource parameterSource, Object mapper, Supplier<T> loader) {
+        Statement statement = statements.get(namedSql);
+        Object[] values = statement != null && statement.policy != null ? valuesOf(parameterSource) : null;
+        if (values == null) {
+            return loader.get();
+        }
+
+        Key key = new Key(kind, namedSql, values, mapper);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        long now = System.nanoTime();
+        if (entry != null && now - entry.expiresAt < 0 && isCurrent(entry, statement)) {
+            hits.increment();
+            return (T) copy(entry.value == NULL ? null : entry.value);
+        }
+
+        misses.increment();
+        long[] generations = generationsOf(statement);
+        long currentGeneration = generation.get();
+        T value = loader.get();
+        Entry loaded = new Entry(
+                value == null ? NULL : copy(value),
+                generations,
+                currentGeneration,
+                now + statement.policy.getTtl().toNanos()
+        );
+        synchronized (entries) {
+            entries.put(key, loaded);
+        }
+        return value;
+    }
+
+    void invalidate(String namedSql) {
+        Statement statement = statements.get(namedSql);
+        if (statement == null || statement.tables == null) {
+            generation.incrementAndGet();
+            return;
+        }
+        invalidateTables(statement.tables);
+    }
+
+    void invalidateTables(String... tables) {
+        for (String table : tables) {
+            tableGenerations.computeIfAbsent(table, name -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    private boolean isCurrent(Entry entry, Statement statement) {
+        if (entry.generation != generation.get()) {
+            return false;
+        }
+        for (int i = 0; i < statement.tables.length; i++) {
+            if (entry.tableGenerations[i] != tableGeneration(statement.tables[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long[] generationsOf(Statement statement) {
+        long[] generations = new long[statement.tables.length];
+        for (int i = 0; i < generations.length; i++) {
+            generations[i] = tableGeneration(statement.tables[i]);
+        }
+        return generations;
+    }
+
+    private long tableGeneration(String table) {
+        AtomicLong tableGeneration = tableGenerations.get(table);
+        return tableGeneration != null ? tableGeneration.get() : 0;
+    }
+
+    private static Object copy(Object value) {
+        return value instanceof List ? new ArrayList<>((List<?>) value) : value;
+    }
+
+    private static Object[] valuesOf(SqlParameterSource parameterSource) {
+        String[] names = parameterSource.getParameterNames();
+        if (names == null) {
+            return null;
+        }
+        Object[] values = new Object[names.length * 2];
+        for (int i = 0; i < names.length; i++) {
+            values[i * 2] = names[i];
+            values[i * 2 + 1] = parameterSource.getValue(names[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Collects the names of the tables a query references, or null when it contains plain SQL.
+     * Aliased tables render an alias child; only the table the alias wraps is collected for them.
+     */
+    static Set<String> tablesOf(Query query) {
+        Set<QueryPart> aliased = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<QueryPart, Boolean> tables = new IdentityHashMap<>();
+        boolean[] plainSql = new boolean[1];
+        Configuration configuration = new DefaultConfiguration()
+                .set(SQLDialect.POSTGRES)
+                .set(new DefaultVisitListenerProvider(new DefaultVisitListener() {
+                    @Override
+                    public void visitStart(VisitContext context) {
+                        QueryPart part = context.queryPart();
+                        QueryPart[] parts = context.queryParts();
+                        QueryPart parent = parts.length > 1 ? parts[parts.length - 2] : null;
+                        if (part instanceof SQL) {
+                            plainSql[0] = true;
+                        } else if (part instanceof TableImpl) {
+                            tables.merge(part, isAlias(parent), Boolean::logicalOr);
+                        } else if (isAlias(part) && parent != null) {
+                            aliased.add(parent);
+                        }
+                    }
+                }));
+        DSL.using(configuration).render(query);
+        if (plainSql[0]) {
+            return null;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        tables.forEach((table, wrapped) -> {
+            if (wrapped || !aliased.contains(table)) {
+                names.add(((Table<?>) table).getName());
+            }
+        });
+        return names;
+    }
+
+    private static boolean isAlias(QueryPart part) {
+        return part != null && "org.jooq.impl.Alias".equals(part.getClass().getName());
+    }
+
+    private static class Statement {
+
+        private final String[] tables;
+
+        private final boolean select;
+
+        private final CachePolicy policy;
+
+        Statement(String[] tables, boolean select, CachePolicy policy) {
+            this.tables = tables;
+            this.select = select;
+            this.policy = policy;
+        }
+    }
+
+    private static class Entry {
+
+        private final Object value;
+
+        private final long[] tableGenerations;
+
+        private final long generation;
+
+        private final long expiresAt;
+
+        Entry(Object value, long[] tableGenerations, long generation, long expiresAt) {
+            this.value = value;
+            this.tableGenerations = tableGenerations;
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static class Key {
+
+        private final Object kind;
+
+        private final String namedSql;
+
+        private final Object[] values;
+
+        private final Object mapper;
+
+        private final int hash;
+
+        Key(Object kind, String namedSql, Object[] values, Object mapper) {
+            this.kind = kind;
+            this.namedSql = namedSql;
+            this.values = values;
+            this.mapper = mapper;
+            this.hash = 31 * (31 * (31 * kind.hashCode() + namedSql.hashCode()) + Arrays.deepHashCode(values))
+                    + System.identityHashCode(mapper);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return kind == key.kind && mapper == key.mapper && namedSql.equals(key.namedSql)
+                    && Arrays.deepEquals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.dao.DaoException;
+import org.springframework.core.NestedRuntimeException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Forward-only cursor over a query result. Holds its connection until the result is exhausted or the stream is
+ * closed. Outside of a transaction auto-commit is switched off for the cursor lifetime, otherwise PostgreSQL
+ * ignores the fetch size and sends the whole result at once.
+ */
+class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String namedSql;
+
+    private final RowMapper<T> rowMapper;
+
+    private final DataSource dataSource;
+
+    private Connection connection;
+
+    private boolean resetAutoCommit;
+
+    private PreparedStatement statement;
+
+    private ResultSet resultSet;
+
+    private int rowNum;
+
+    private boolean closed;
+
+    private ResultSetSpliterator(JdbcTemplate jdbcTemplate, String namedSql, RowMapper<T> rowMapper) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED);
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedSql = namedSql;
+        this.rowMapper = rowMapper;
+        this.dataSource = jdbcTemplate.getDataSource();
+    }
+
+    static <T> Stream<T> stream(JdbcTemplate jdbcTemplate,
+                                String namedSql,
+                                SqlParameterSource parameterSource,
+                                RowMapper<T> rowMapper,
+                                int fetchSize) throws DaoException {
+        ResultSetSpliterator<T> spliterator = new ResultSetSpliterator<>(jdbcTemplate, namedSql, rowMapper);
+        spliterator.open(parameterSource, fetchSize);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    private void open(SqlParameterSource parameterSource, int fetchSize) throws DaoException {
+        try {
+            connection = DataSourceUtils.getConnection(dataSource);
+            if (connection.getAutoCommit() && !DataSourceUtils.isConnectionTransactional(connection, dataSource)) {
+                connection.setAutoCommit(false);
+                resetAutoCommit = true;
+            }
+
+            ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(namedSql);
+            String sql = NamedParameterUtils.substituteNamedParameters(parsedSql, parameterSource);
+            List<SqlParameter> declaredParameters = NamedParameterUtils.buildSqlParameterList(parsedSql,
+                    parameterSource);
+            Object[] params = NamedParameterUtils.buildValueArray(parsedSql, parameterSource, null);
+            PreparedStatementCreatorFactory statementCreatorFactory =
+                    new PreparedStatementCreatorFactory(sql, declaredParameters);
+            statementCreatorFactory.setResultSetType(ResultSet.TYPE_FORWARD_ONLY);
+            statementCreatorFactory.setUpdatableResults(false);
+
+            statement = statementCreatorFactory.newPreparedStatementCreator(params)
+                    .createPreparedStatement(connection);
+            applyStatementSettings(fetchSize);
+            resultSet = statement.executeQuery();
+        } catch (SQLException ex) {
+            close();
+            throw translate(ex);
+        } catch (NestedRuntimeException ex) {
+            close();
+            throw new DaoException(ex);
+        }
+    }
+
+    /**
+     * Same settings {@link DeadlineJdbcTemplate} applies to its own statements, with the stream fetch size.
+     */
+    private void applyStatementSettings(int fetchSize) throws SQLException {
+        statement.setFetchSize(fetchSize);
+        if (jdbcTemplate.getMaxRows() != -1) {
+            statement.setMaxRows(jdbcTemplate.getMaxRows());
+        }
+        DataSourceUtils.applyTimeout(statement, dataSource, jdbcTemplate.getQueryTimeout());
+        DeadlineJdbcTemplate.applyDeadline(statement);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (closed) {
+            return false;
+        }
+        try {
+            if (!resultSet.next()) {
+                close();
+                return false;
+            }
+            action.accept(rowMapper.mapRow(resultSet, rowNum++));
+            return true;
+        } catch (SQLException ex) {
+            close();
+            throw translate(ex);
+        } catch (NestedRuntimeException ex) {
+            close();
+            throw new DaoException(ex);
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        JdbcUtils.closeResultSet(resultSet);
+        JdbcUtils.closeStatement(statement);
+        if (connection != null) {
+            try {
+                if (resetAutoCommit) {
+                    resetAutoCommit();
+                }
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        }
+    }
+
+    /**
+     * Ends the cursor transaction and restores auto-commit even if the commit fails, so the connection is not
+     * returned to the pool inside a transaction.
+     */
+    private void resetAutoCommit() {
+        SQLException failure = null;
+        try {
+            connection.commit();
+        } catch (SQLException ex) {
+            failure = ex;
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackEx) {
+                failure.addSuppressed(rollbackEx);
+            }
+        }
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException ex) {
+            if (failure == null) {
+                failure = ex;
+            } else {
+                failure.addSuppressed(ex);
+            }
+        }
+        if (failure != null) {
+            throw translate(failure);
+        }
+    }
+
+    private DaoException translate(SQLException ex) {
+        return new DaoException(jdbcTemplate.getExceptionTranslator().translate("Stream", namedSql, ex));
+    }
+}
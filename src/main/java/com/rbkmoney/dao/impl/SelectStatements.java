@@ -0,0 +1,43 @@
+package com.rbkmoney.dao.impl;
+
+import java.util.regex.Pattern;
+
+/**
+ * Tells selects from writes for statements given as SQL text only.
+ */
+final class SelectStatements {
+
+    private static final Pattern DATA_MODIFYING =
+            Pattern.compile("\\b(insert|update|delete|merge)\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern LOCKING = Pattern.compile(
+            "\\bfor\\s+(update|share|no\\s+key\\s+update|key\\s+share)\\b",
+            Pattern.CASE_INSENSITIVE
+    );
+
+    private SelectStatements() {
+    }
+
+    /**
+     * Tells whether the statement is a select, possibly with a common table expression that does not modify data.
+     * Writes fetched with {@code returning} are reads by statement type but change data all the same.
+     */
+    static boolean isSelect(String namedSql) {
+        int start = 0;
+        while (start < namedSql.length()
+                && (Character.isWhitespace(namedSql.charAt(start)) || namedSql.charAt(start) == '(')) {
+            start++;
+        }
+        if (namedSql.regionMatches(true, start, "select", 0, 6)) {
+            return true;
+        }
+        return namedSql.regionMatches(true, start, "with", 0, 4) && !DATA_MODIFYING.matcher(namedSql).find();
+    }
+
+    /**
+     * Tells whether the statement has a locking clause such as {@code for update}, which takes row locks.
+     */
+    static boolean locksRows(String namedSql) {
+        return LOCKING.matcher(namedSql).find();
+    }
+}
@@ -0,0 +1,105 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.dao.metrics.ExplainSink;
+import com.rbkmoney.dao.metrics.StatementIds;
+import com.rbkmoney.dao.metrics.StatementType;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples statements slower than the threshold and runs {@code EXPLAIN (FORMAT JSON)} for them on the executor,
+ * at most once per {@code interval} for each named SQL. Samples are dropped when the executor rejects them, and
+ * plans that fail to be captured are not reported.
+ */
+class SlowStatementExplainer {
+
+    private static final int MAX_STATEMENTS = 4096;
+
+    private final long thresholdNanos;
+
+    private final double samplingRate;
+
+    private final long intervalNanos;
+
+    private final boolean analyzeReads;
+
+    private final ExplainSink sink;
+
+    private final Executor executor;
+
+    private final ConcurrentMap<String, Long> lastExplained = new ConcurrentHashMap<>();
+
+    SlowStatementExplainer(Duration threshold,
+                           double samplingRate,
+                           Duration interval,
+                           boolean analyzeReads,
+                           ExplainSink sink,
+                           Executor executor) {
+        this.thresholdNanos = threshold.toNanos();
+        this.samplingRate = samplingRate;
+        this.intervalNanos = interval.toNanos();
+        this.analyzeReads = analyzeReads;
+        this.sink = sink;
+        this.executor = executor;
+    }
+
+    void onExecuted(StatementType type,
+                    String namedSql,
+                    SqlParameterSource parameterSource,
+                    NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                    long durationNanos) {
+        if (durationNanos < thresholdNanos
+                || samplingRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= samplingRate
+                || !acquire(namedSql)) {
+            return;
+        }
+        try {
+            executor.execute(() -> explain(type, namedSql, parameterSource, namedParameterJdbcTemplate, durationNanos));
+        } catch (RejectedExecutionException ex) {
+            lastExplained.remove(namedSql);
+        }
+    }
+
+    private boolean acquire(String namedSql) {
+        long now = System.nanoTime();
+        Long last = lastExplained.get(namedSql);
+        if (last != null && now - last < intervalNanos) {
+            return false;
+        }
+        if (lastExplained.size() >= MAX_STATEMENTS) {
+            lastExplained.clear();
+        }
+        return last == null
+                ? lastExplained.putIfAbsent(namedSql, now) == null
+                : lastExplained.replace(namedSql, last, now);
+    }
+
+    private void explain(StatementType type,
+                         String namedSql,
+                         SqlParameterSource parameterSource,
+                         NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                         long durationNanos) {
+        boolean analyze = analyzeReads
+                && type.isRead()
+                && SelectStatements.isSelect(namedSql)
+                && !SelectStatements.locksRows(namedSql);
+        String plan;
+        try {
+            plan = namedParameterJdbcTemplate.queryForObject(
+                    (analyze ? "explain (analyze, format json) " : "explain (format json) ") + namedSql,
+                    parameterSource,
+                    String.class
+            );
+        } catch (RuntimeException ex) {
+            return;
+        }
+        sink.accept(type, StatementIds.of(namedSql), namedSql, durationNanos, plan);
+    }
+}
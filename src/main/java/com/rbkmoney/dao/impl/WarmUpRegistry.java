@@ -0,0 +1,150 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.dao.DaoException;
+import com.rbkmoney.mapper.PlannedRowMapper;
+import org.jooq.Query;
+import org.jooq.Select;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statement shapes DAOs use, warmed up before the first request. {@link #warmUp(int)} renders every registered
+ * query through its dao, which registers it with the result cache and exercises the rendering path,
+ * then prepares the SQL on several pooled connections at once so that each of them parses and describes it.
+ * Selects are prepared on the {@link AbstractGenericDao#getReplicaDataSources() replicas} of the dao as well, as
+ * reads may be routed to them. The result set metadata of the first preparation on the primary is used to build the
+ * plans of registered {@link PlannedRowMapper}s.
+ * <p>
+ * Bind values of registered queries are only used to render them; the statements are never executed.
+ */
+public class WarmUpRegistry {
+
+    private final List<Registration> registrations = new ArrayList<>();
+
+    public synchronized void register(AbstractGenericDao dao, Query query) {
+        register(dao, query, null);
+    }
+
+    public synchronized void register(AbstractGenericDao dao, Query query, RowMapper<?> rowMapper) {
+        registrations.add(new Registration(dao, query, rowMapper));
+    }
+
+    /**
+     * @param connections number of pooled connections per data source to prepare the statements on
+     */
+    public WarmUpReport warmUp(int connections) throws DaoException {
+        if (connections <= 0) {
+            throw new IllegalArgumentException("Connections must be positive");
+        }
+        long startTime = System.nanoTime();
+        List<Registration> registered;
+        synchronized (this) {
+            registered = new ArrayList<>(registrations);
+        }
+
+        Map<DataSource, List<Statement>> statementsByDataSource = new LinkedHashMap<>();
+        for (Registration registration : registered) {
+            RenderedQuery renderedQuery = registration.dao.render(registration.query);
+            SqlParameterSource parameterSource = registration.dao.toSqlParameterSource(renderedQuery.getParams());
+            String sql = NamedParameterUtils.substituteNamedParameters(renderedQuery.getNamedSql(), parameterSource);
+            statementsByDataSource
+                    .computeIfAbsent(registration.dao.getDataSource(), dataSource -> new ArrayList<>())
+                    .add(new Statement(sql, registration.rowMapper));
+            if (registration.query instanceof Select) {
+                for (DataSource replica : registration.dao.getReplicaDataSources()) {
+                    statementsByDataSource
+                            .computeIfAbsent(replica, dataSource -> new ArrayList<>())
+                            .add(new Statement(sql, null));
+                }
+            }
+        }
+
+        int failures = 0;
+        for (Map.Entry<DataSource, List<Statement>> entry : statementsByDataSource.entrySet()) {
+            failures += prepare(entry.getKey(), entry.getValue(), connections);
+        }
+        return new WarmUpReport(registered.size(), failures, Duration.ofNanos(System.nanoTime() - startTime));
+    }
+
+    private static int prepare(DataSource dataSource, List<Statement> statements, int connections) {
+        List<Connection> opened = new ArrayList<>(connections);
+        try {
+            for (int i = 0; i < connections; i++) {
+                opened.add(dataSource.getConnection());
+            }
+            int failures = 0;
+            for (int i = 0; i < opened.size(); i++) {
+                for (Statement statement : statements) {
+                    if (!prepare(opened.get(i), statement, i == 0)) {
+                        failures++;
+                    }
+                }
+            }
+            return failures;
+        } catch (SQLException ex) {
+            throw new DaoException("Failed to open connection for warm-up", ex);
+        } finally {
+            opened.forEach(JdbcUtils::closeConnection);
+        }
+    }
+
+    private static boolean prepare(Connection connection, Statement statement, boolean planMapper) {
+        PreparedStatement preparedStatement = null;
+        try {
+            preparedStatement = connection.prepareStatement(statement.sql);
+            ResultSetMetaData metaData = preparedStatement.getMetaData();
+            if (planMapper && metaData != null && statement.rowMapper instanceof PlannedRowMapper) {
+                String[] columnNames = new String[metaData.getColumnCount()];
+                for (int column = 1; column <= columnNames.length; column++) {
+                    columnNames[column - 1] = metaData.getColumnName(column);
+                }
+                ((PlannedRowMapper<?>) statement.rowMapper).prepare(columnNames);
+            }
+            return true;
+        } catch (SQLException ex) {
+            return false;
+        } finally {
+            JdbcUtils.closeStatement(preparedStatement);
+        }
+    }
+
+    private static class Registration {
+
+        private final AbstractGenericDao dao;
+
+        private final Query query;
+
+        private final RowMapper<?> rowMapper;
+
+        Registration(AbstractGenericDao dao, Query query, RowMapper<?> rowMapper) {
+            this.dao = dao;
+            this.query = query;
+            this.rowMapper = rowMapper;
+        }
+    }
+
+    private static class Statement {
+
+        private final String sql;
+
+        private final RowMapper<?> rowMapper;
+
+        Statement(String sql, RowMapper<?> rowMapper) {
+            this.sql = sql;
+            this.rowMapper = rowMapper;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.rbkmoney.dao.impl;
+
+import java.time.Duration;
+
+public class WarmUpReport {
+
+    private final int statements;
+
+    private final int failures;
+
+    private final Duration duration;
+
+    WarmUpReport(int statements, int failures, Duration duration) {
+        this.statements = statements;
+        this.failures = failures;
+        this.duration = duration;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    /**
+     * Number of statement preparations the database rejected.
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return "WarmUpReport{statements=" + statements + ", failures=" + failures + ", duration=" + duration + "}";
+    }
+}
@@ -0,0 +1,244 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.dao.DaoException;
+import com.rbkmoney.dao.DaoRejectedException;
+import org.jooq.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects single writes and executes them as batches grouped by rendered SQL, the same way
+ * {@link AbstractGenericDao#batchExecute(List)} does. A batch is flushed when a group reaches
+ * {@code maxBatchSize} writes, every {@code flushInterval}, on {@link #flush()} and on {@link #close()}.
+ * <p>
+ * Writes with different SQL may be executed in a different order than they were submitted. A batch is sent as
+ * JDBC batches of at most the dao's {@link AbstractGenericDao#getMaxBatchSize() max batch size}. When one of them
+ * fails with a {@link DataIntegrityViolationException} outside a transaction its writes are retried one by one, so
+ * every future completes with its own row count or error; PostgreSQL runs an auto-commit JDBC batch in one implicit
+ * transaction, so none of its writes were committed. On any other failure, such as a timeout or a rejection, every
+ * write of the batch fails with it, as some of them may have been committed.
+ * At most {@code maxPendingWrites} writes are held in memory, {@link #write(Query)} waits up to
+ * {@code maxWait} for room and then fails with {@link DaoRejectedException}.
+ */
+public class WriteBehindBuffer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    private final AbstractGenericDao dao;
+
+    private final int maxBatchSize;
+
+    private final Duration maxWait;
+
+    private final Semaphore capacity;
+
+    private final ScheduledExecutorService flusher;
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final Object lock = new Object();
+
+    private Map<String, List<PendingWrite>> pendingWrites = new LinkedHashMap<>();
+
+    private volatile boolean closed;
+
+    public WriteBehindBuffer(AbstractGenericDao dao,
+                             int maxBatchSize,
+                             Duration flushInterval,
+                             int maxPendingWrites,
+                             Duration maxWait) {
+        if (maxBatchSize <= 0 || maxPendingWrites <= 0) {
+            throw new IllegalArgumentException("Max batch size and max pending writes must be positive");
+        }
+        this.dao = dao;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWait = maxWait;
+        this.capacity = new Semaphore(maxPendingWrites);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                new DaoExecutors.NamedThreadFactory("write-behind-" + dao.getClass().getSimpleName())
+        );
+        long intervalNanos = flushInterval.toNanos();
+        this.flusher.scheduleWithFixedDelay(this::flushScheduled, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return future completed with the number of rows the write affected once its batch is executed
+     */
+    public CompletableFuture<Integer> write(Query query) throws DaoException {
+        if (closed) {
+            throw new DaoRejectedException("Write-behind buffer is closed");
+        }
+        RenderedQuery renderedQuery = dao.render(query);
+        PendingWrite write = new PendingWrite(dao.toSqlParameterSource(renderedQuery.getParams()));
+        acquire();
+        boolean full;
+        synchronized (lock) {
+            if (closed) {
+                capacity.release();
+                throw new DaoRejectedException("Write-behind buffer is closed");
+            }
+            List<PendingWrite> group = pendingWrites.computeIfAbsent(
+                    renderedQuery.getNamedSql(),
+                    namedSql -> new ArrayList<>()
+            );
+            group.add(write);
+            full = group.size() >= maxBatchSize;
+        }
+        if (full && flushScheduled.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushScheduled);
+            } catch (RejectedExecutionException ex) {
+                flushScheduled.set(false);
+            }
+        }
+        return write.future;
+    }
+
+    /**
+     * Executes every write submitted before the call and waits for them to complete.
+     */
+    public void flush() throws DaoException {
+        try {
+            flusher.submit(this::flushPending).get();
+        } catch (RejectedExecutionException ex) {
+            flushPending();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DaoException("Interrupted while flushing write-behind buffer", ex);
+        } catch (ExecutionException ex) {
+            throw new DaoException("Failed to flush write-behind buffer", ex.getCause());
+        }
+    }
+
+    /**
+     * Rejects new writes, flushes the pending ones and stops the flush thread.
+     */
+    @Override
+    public void close() throws DaoException {
+        synchronized (lock) {
+            closed = true;
+        }
+        try {
+            flush();
+        } finally {
+            flusher.shutdown();
+        }
+    }
+
+    private void acquire() {
+        try {
+            if (!capacity.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new DaoRejectedException("Write-behind buffer is full");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DaoRejectedException("Interrupted while waiting for write-behind buffer", ex);
+        }
+    }
+
+    private void flushScheduled() {
+        try {
+            flushPending();
+        } catch (Throwable ex) {
+            log.error("Failed to flush write-behind buffer", ex);
+        }
+    }
+
+    private void flushPending() {
+        flushScheduled.set(false);
+        Map<String, List<PendingWrite>> writes;
+        synchronized (lock) {
+            if (pendingWrites.isEmpty()) {
+                return;
+            }
+            writes = pendingWrites;
+            pendingWrites = new LinkedHashMap<>();
+        }
+        writes.forEach(this::execute);
+    }
+
+    private void execute(String namedSql, List<PendingWrite> writes) {
+        for (List<PendingWrite> chunk : AbstractGenericDao.chunks(writes, dao.getMaxBatchSize())) {
+            executeChunk(namedSql, chunk);
+        }
+    }
+
+    private void executeChunk(String namedSql, List<PendingWrite> writes) {
+        int[] rowsAffected;
+        try {
+            List<SqlParameterSource> parameterSources = new ArrayList<>(writes.size());
+            for (PendingWrite write : writes) {
+                parameterSources.add(write.parameterSource);
+            }
+            rowsAffected = dao.executeBatch(namedSql, parameterSources);
+        } catch (RuntimeException | Error ex) {
+            if (writes.size() > 1 && isRolledBack(ex)) {
+                retry(namedSql, writes);
+            } else {
+                writes.forEach(write -> write.fail(ex));
+            }
+            if (ex instanceof Error) {
+                throw ex;
+            }
+            return;
+        }
+        for (int i = 0; i < writes.size(); i++) {
+            writes.get(i).complete(rowsAffected[i]);
+        }
+    }
+
+    private void retry(String namedSql, List<PendingWrite> writes) {
+        for (PendingWrite write : writes) {
+            try {
+                write.complete(dao.execute(namedSql, write.parameterSource));
+            } catch (RuntimeException ex) {
+                write.fail(ex);
+            }
+        }
+    }
+
+    private static boolean isRolledBack(Throwable ex) {
+        return ex instanceof DaoException
+                && !(ex instanceof DaoRejectedException)
+                && ex.getCause() instanceof DataIntegrityViolationException
+                && !TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    private class PendingWrite {
+
+        private final SqlParameterSource parameterSource;
+
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        PendingWrite(SqlParameterSource parameterSource) {
+            this.parameterSource = parameterSource;
+        }
+
+        void complete(int rowsAffected) {
+            capacity.release();
+            future.complete(rowsAffected);
+        }
+
+        void fail(Throwable error) {
+            capacity.release();
+            future.completeExceptionally(error);
+        }
+    }
+}
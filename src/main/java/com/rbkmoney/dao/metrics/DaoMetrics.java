@@ -0,0 +1,19 @@
+package com.rbkmoney.dao.metrics;
+
+@FunctionalInterface
+public interface DaoMetrics {
+
+    DaoMetrics NOOP = (type, statementId, batchSize, rows, durationNanos, error) -> {
+    };
+
+    /**
+     * Called once per statement execution.
+     *
+     * @param statementId   low-cardinality statement identifier, see {@link StatementIds}
+     * @param batchSize     number of parameter sets executed, 1 for single statements
+     * @param rows          rows returned or affected, -1 when the statement failed
+     * @param error         the failure, null on success
+     */
+    void record(StatementType type, String statementId, int batchSize, long rows, long durationNanos, Throwable error);
+
+}
@@ -0,0 +1,16 @@
+package com.rbkmoney.dao.metrics;
+
+@FunctionalInterface
+public interface ExplainSink {
+
+    /**
+     * Called from a background thread with the plan of a statement that ran longer than the slow statement
+     * threshold.
+     *
+     * @param statementId   low-cardinality statement identifier, see {@link StatementIds}
+     * @param durationNanos duration of the slow execution
+     * @param plan          output of {@code EXPLAIN (FORMAT JSON)}
+     */
+    void accept(StatementType type, String statementId, String namedSql, long durationNanos, String plan);
+
+}
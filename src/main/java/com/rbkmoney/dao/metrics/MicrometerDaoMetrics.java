@@ -0,0 +1,95 @@
+package com.rbkmoney.dao.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes statement metrics tagged with {@code type} and {@code statement}:
+ * {@code dao.statement.duration} timer with percentile histogram, {@code dao.statement.rows} and
+ * {@code dao.statement.batch.size} summaries, and {@code dao.statement.errors} counter. At most
+ * {@code maxStatements} statement ids get their own meters, statements beyond that are recorded with
+ * {@code statement=other}.
+ */
+public class MicrometerDaoMetrics implements DaoMetrics {
+
+    public static final int DEFAULT_MAX_STATEMENTS = 1000;
+
+    private static final String OTHER_STATEMENT_ID = "other";
+
+    private final MeterRegistry meterRegistry;
+
+    private final int maxStatements;
+
+    private final ConcurrentMap<String, Meters> meters = new ConcurrentHashMap<>();
+
+    public MicrometerDaoMetrics(MeterRegistry meterRegistry) {
+        this(meterRegistry, DEFAULT_MAX_STATEMENTS);
+    }
+
+    public MicrometerDaoMetrics(MeterRegistry meterRegistry, int maxStatements) {
+        if (maxStatements <= 0) {
+            throw new IllegalArgumentException("Max statements must be positive");
+        }
+        this.meterRegistry = meterRegistry;
+        this.maxStatements = maxStatements;
+    }
+
+    @Override
+    public void record(StatementType type, String statementId, int batchSize, long rows, long durationNanos,
+                       Throwable error) {
+        Meters statementMeters = meters.get(type.name() + ' ' + statementId);
+        if (statementMeters == null) {
+            statementMeters = meters(type, meters.size() < maxStatements ? statementId : OTHER_STATEMENT_ID);
+        }
+        statementMeters.duration.record(durationNanos, TimeUnit.NANOSECONDS);
+        statementMeters.batchSize.record(batchSize);
+        if (error == null) {
+            statementMeters.rows.record(rows);
+        } else {
+            statementMeters.errors.increment();
+        }
+    }
+
+    private Meters meters(StatementType type, String statementId) {
+        return meters.computeIfAbsent(
+                type.name() + ' ' + statementId,
+                key -> new Meters(meterRegistry, Tags.of("type", type.name().toLowerCase(Locale.ROOT),
+                        "statement", statementId))
+        );
+    }
+
+    private static class Meters {
+
+        private final Timer duration;
+
+        private final DistributionSummary rows;
+
+        private final DistributionSummary batchSize;
+
+        private final Counter errors;
+
+        private Meters(MeterRegistry meterRegistry, Tags tags) {
+            this.duration = Timer.builder("dao.statement.duration")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.rows = DistributionSummary.builder("dao.statement.rows")
+                    .tags(tags)
+                    .register(meterRegistry);
+            this.batchSize = DistributionSummary.builder("dao.statement.batch.size")
+                    .tags(tags)
+                    .register(meterRegistry);
+            this.errors = Counter.builder("dao.statement.errors")
+                    .tags(tags)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.rbkmoney.dao.metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Derives a stable statement identifier from named SQL: the leading keyword, the main table and a short hash of
+ * the statement text, e.g. {@code insert:payment:1c2b3a4d}. Bind values are not part of named SQL, and lists of
+ * placeholders such as IN-lists and multi-row values are collapsed before hashing, so the number of identifiers
+ * is bounded by the number of statement shapes rather than by list sizes.
+ */
+public final class StatementIds {
+
+    private static final int MAX_CACHED = 4096;
+
+    private static final Pattern TABLE_PATTERN = Pattern.compile(
+            "\\b(?:from|into|update|join)\\s+((?:\"[^\"]+\"|\\w+)(?:\\.(?:\"[^\"]+\"|\\w+))?)",
+            Pattern.CASE_INSENSITIVE
+    );
+
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("(?<!:):\\w+");
+
+    private static final Pattern PLACEHOLDER_LIST_PATTERN = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+
+    private static final Pattern ROW_LIST_PATTERN = Pattern.compile("\\(\\?\\)(?:\\s*,\\s*\\(\\?\\))+");
+
+    private static final ConcurrentMap<String, String> CACHE = new ConcurrentHashMap<>();
+
+    private StatementIds() {
+    }
+
+    public static String of(String namedSql) {
+        String statementId = CACHE.get(namedSql);
+        if (statementId == null) {
+            statementId = create(namedSql);
+            if (CACHE.size() >= MAX_CACHED) {
+                CACHE.clear();
+            }
+            CACHE.put(namedSql, statementId);
+        }
+        return statementId;
+    }
+
+    private static String create(String namedSql) {
+        String sql = namedSql.trim();
+        int keywordEnd = 0;
+        while (keywordEnd < sql.length() && Character.isLetter(sql.charAt(keywordEnd))) {
+            keywordEnd++;
+        }
+        String keyword = keywordEnd > 0 ? sql.substring(0, keywordEnd).toLowerCase(Locale.ROOT) : "sql";
+
+        Matcher matcher = TABLE_PATTERN.matcher(sql);
+        String table = matcher.find() ? matcher.group(1).replace("\"", "") : "unknown";
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(normalize(sql).getBytes(StandardCharsets.UTF_8));
+        return keyword + ":" + table + ":" + String.format("%08x", crc32.getValue());
+    }
+
+    private static String normalize(String sql) {
+        String normalized = PLACEHOLDER_PATTERN.matcher(sql).replaceAll("?");
+        normalized = PLACEHOLDER_LIST_PATTERN.matcher(normalized).replaceAll("?");
+        return ROW_LIST_PATTERN.matcher(normalized).replaceAll("(?)");
+    }
+}
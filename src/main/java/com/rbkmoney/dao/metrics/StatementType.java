@@ -0,0 +1,21 @@
+package com.rbkmoney.dao.metrics;
+
+public enum StatementType {
+
+    FETCH_ONE(true),
+    FETCH(true),
+    FETCH_MANY(true),
+    EXECUTE(false),
+    BATCH_EXECUTE(false);
+
+    private final boolean read;
+
+    StatementType(boolean read) {
+        this.read = read;
+    }
+
+    public boolean isRead() {
+        return read;
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.rbkmoney.mapper;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+final class Accessors {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private Accessors() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> Supplier<T> constructor(Constructor<T> constructor) {
+        try {
+            MethodHandle handle = LOOKUP.unreflectConstructor(constructor);
+            if (isVisible(constructor.getDeclaringClass())) {
+                CallSite callSite = LambdaMetafactory.metafactory(
+                        LOOKUP,
+                        "get",
+                        MethodType.methodType(Supplier.class),
+                        MethodType.methodType(Object.class),
+                        handle,
+                        MethodType.methodType(constructor.getDeclaringClass())
+                );
+                return (Supplier<T>) callSite.getTarget().invoke();
+            }
+            MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+            return () -> {
+                try {
+                    return (T) generic.invokeExact();
+                } catch (Throwable ex) {
+                    throw sneakyThrow(ex);
+                }
+            };
+        } catch (Throwable ex) {
+            throw new IllegalArgumentException("Failed to bind constructor " + constructor, ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static BiConsumer<Object, Object> setter(Method method) {
+        try {
+            MethodHandle handle = LOOKUP.unreflect(method);
+            if (isVisible(method.getDeclaringClass()) && isVisible(method.getParameterTypes()[0])) {
+                CallSite callSite = LambdaMetafactory.metafactory(
+                        LOOKUP,
+                        "accept",
+                        MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class),
+                        handle,
+                        MethodType.methodType(void.class, method.getDeclaringClass(),
+                                MethodType.methodType(method.getParameterTypes()[0]).wrap().returnType())
+                );
+                return (BiConsumer<Object, Object>) callSite.getTarget().invoke();
+            }
+            MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return (target, value) -> {
+                try {
+                    generic.invokeExact(target, value);
+                } catch (Throwable ex) {
+                    throw sneakyThrow(ex);
+                }
+            };
+        } catch (Throwable ex) {
+            throw new IllegalArgumentException("Failed to bind setter " + method, ex);
+        }
+    }
+
+    private static boolean isVisible(Class<?> type) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        try {
+            return Class.forName(type.getName(), false, Accessors.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> RuntimeException sneakyThrow(Throwable ex) throws E {
+        throw (E) ex;
+    }
+}
@@ -0,0 +1,15 @@
+package com.rbkmoney.mapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a binary column straight from the driver's stream into the mapped object, so the column value never has
+ * to be held as a {@code byte[]} next to its decoded form. The stream is closed by the mapper.
+ */
+@FunctionalInterface
+public interface BinaryDecoder<T> {
+
+    void decode(InputStream input, T target) throws IOException;
+
+}
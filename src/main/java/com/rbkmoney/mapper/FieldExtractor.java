@@ -0,0 +1,25 @@
+package com.rbkmoney.mapper;
+
+import com.rbkmoney.geck.common.util.TypeUtil;
+import org.jooq.Field;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+@FunctionalInterface
+interface FieldExtractor {
+
+    Object extract(ResultSet resultSet, int column) throws SQLException;
+
+    @SuppressWarnings("unchecked")
+    static FieldExtractor forField(Field field) {
+        if (field.getDataType().isBinary()) {
+            return ResultSet::getBytes;
+        }
+        Class fieldType = field.getType();
+        if (fieldType.isEnum()) {
+            return (resultSet, column) -> TypeUtil.toEnumField(resultSet.getString(column), fieldType);
+        }
+        return (resultSet, column) -> resultSet.getObject(column, fieldType);
+    }
+}
@@ -0,0 +1,67 @@
+package com.rbkmoney.mapper;
+
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Mapping plans per result set shape (ordered column names). The resolved plan is bound to the result set
+ * currently read by the calling thread, so metadata is inspected once per result set, not once per row.
+ */
+class PlanCache<P> {
+
+    private final ConcurrentMap<List<String>, P> plans = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<Binding<P>> binding = new ThreadLocal<>();
+
+    private final PlanFactory<P> planFactory;
+
+    PlanCache(PlanFactory<P> planFactory) {
+        this.planFactory = planFactory;
+    }
+
+    P get(ResultSet resultSet, int rowNum) throws SQLException {
+        Binding<P> current = binding.get();
+        if (rowNum != 0 && current != null && current.resultSet.get() == resultSet) {
+            return current.plan;
+        }
+
+        ResultSetMetaData rsMetaData = resultSet.getMetaData();
+        int columnCount = rsMetaData.getColumnCount();
+        String[] columnNames = new String[columnCount];
+        for (int column = 1; column <= columnCount; column++) {
+            columnNames[column - 1] = rsMetaData.getColumnName(column);
+        }
+        P plan = get(columnNames);
+        binding.set(new Binding<>(resultSet, plan));
+        return plan;
+    }
+
+    P get(String... columnNames) {
+        return plans.computeIfAbsent(Arrays.asList(columnNames), shape -> planFactory.create(columnNames));
+    }
+
+    @FunctionalInterface
+    interface PlanFactory<P> {
+
+        P create(String[] columnNames);
+
+    }
+
+    private static class Binding<P> {
+
+        private final WeakReference<ResultSet> resultSet;
+
+        private final P plan;
+
+        private Binding(ResultSet resultSet, P plan) {
+            this.resultSet = new WeakReference<>(resultSet);
+            this.plan = plan;
+        }
+    }
+}
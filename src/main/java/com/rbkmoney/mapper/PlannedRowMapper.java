@@ -0,0 +1,15 @@
+package com.rbkmoney.mapper;
+
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Row mapper that builds a mapping plan once per result set shape.
+ */
+public interface PlannedRowMapper<T> extends RowMapper<T> {
+
+    /**
+     * Builds the plan for result sets with these column names ahead of the first mapped row.
+     */
+    void prepare(String... columnNames);
+
+}
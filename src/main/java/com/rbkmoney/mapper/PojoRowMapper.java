@@ -0,0 +1,140 @@
+package com.rbkmoney.mapper;
+
+import org.jooq.Field;
+import org.jooq.Table;
+import org.jooq.tools.Convert;
+import org.jooq.tools.StringUtils;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Maps rows of a jOOQ table directly into POJOs, without an intermediate {@link org.jooq.TableRecord}.
+ * Constructor and setters are bound once per type, columns are matched to properties the same way
+ * {@link RecordRowMapper} does through {@code record.into(type)}: table field name in lower camel case.
+ */
+public class PojoRowMapper<T> implements PlannedRowMapper<T> {
+
+    private final Table table;
+
+    private final Supplier<T> constructor;
+
+    private final Map<String, Property> properties;
+
+    private final PlanCache<ColumnPlan> plans;
+
+    public PojoRowMapper(Table table, Class<T> type) {
+        this.table = table;
+        try {
+            this.constructor = Accessors.constructor(type.getConstructor());
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalArgumentException("Type " + type.getName() + " has no public no-arg constructor", ex);
+        }
+        this.properties = resolveProperties(table, type);
+        this.plans = new PlanCache<>(this::createPlan);
+    }
+
+    @Override
+    public void prepare(String... columnNames) {
+        plans.get(columnNames);
+    }
+
+    @Override
+    public T mapRow(ResultSet resultSet, int i) throws SQLException {
+        ColumnPlan plan = plans.get(resultSet, i);
+
+        T target = constructor.get();
+        for (int j = 0; j < plan.columns.length; j++) {
+            Object value = plan.extractors[j].extract(resultSet, plan.columns[j]);
+            if (!resultSet.wasNull()) {
+                Property property = plan.properties[j];
+                property.setter.accept(target, property.converter.apply(value));
+            }
+        }
+        return target;
+    }
+
+    private ColumnPlan createPlan(String[] columnNames) {
+        List<Integer> columns = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+        Set<String> mappedFields = new HashSet<>();
+        for (int column = 1; column <= columnNames.length; column++) {
+            Field field = table.field(columnNames[column - 1]);
+            if (field != null && properties.containsKey(field.getName()) && mappedFields.add(field.getName())) {
+                columns.add(column);
+                fields.add(field);
+            }
+        }
+        return new ColumnPlan(columns, fields, properties);
+    }
+
+    private static Map<String, Property> resolveProperties(Table table, Class<?> type) {
+        Map<String, Method> setters = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers())
+                    && method.getParameterCount() == 1
+                    && method.getName().startsWith("set")) {
+                setters.putIfAbsent(method.getName(), method);
+            }
+        }
+
+        Map<String, Property> properties = new HashMap<>();
+        for (Field field : table.fields()) {
+            Method setter = setters.get("set" + StringUtils.toCamelCase(field.getName()));
+            if (setter != null) {
+                properties.put(field.getName(), new Property(field, setter));
+            }
+        }
+        return properties;
+    }
+
+    private static class Property {
+
+        private final BiConsumer<Object, Object> setter;
+
+        private final Function<Object, Object> converter;
+
+        private Property(Field field, Method method) {
+            this.setter = Accessors.setter(method);
+            Class<?> propertyType = MethodType.methodType(method.getParameterTypes()[0]).wrap().returnType();
+            if (propertyType.isAssignableFrom(field.getType())) {
+                this.converter = Function.identity();
+            } else {
+                this.converter = value -> Convert.convert(value, propertyType);
+            }
+        }
+    }
+
+    private static class ColumnPlan {
+
+        private final int[] columns;
+
+        private final Property[] properties;
+
+        private final FieldExtractor[] extractors;
+
+        private ColumnPlan(List<Integer> columns, List<Field> fields, Map<String, Property> properties) {
+            this.columns = new int[columns.size()];
+            this.properties = new Property[columns.size()];
+            this.extractors = new FieldExtractor[columns.size()];
+            for (int j = 0; j < this.columns.length; j++) {
+                Field field = fields.get(j);
+                this.columns[j] = columns.get(j);
+                this.properties[j] = properties.get(field.getName());
+                this.extractors[j] = FieldExtractor.forField(field);
+            }
+        }
+    }
+}
@@ -1,54 +1,131 @@
 package com.rbkmoney.mapper;
 
-import com.rbkmoney.geck.common.util.TypeUtil;
 import org.jooq.Field;
 import org.jooq.Table;
 import org.jooq.TableRecord;
 import org.jooq.impl.TableRecordImpl;
-import org.springframework.jdbc.core.RowMapper;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class RecordRowMapper<T> implements RowMapper<T> {
+public class RecordRowMapper<T> implements PlannedRowMapper<T> {
 
     private final Table table;
 
     private final Class<T> type;
 
+    private final PlanCache<ColumnPlan<T>> plans;
+
+    private final Map<String, BinaryDecoder<? super T>> binaryDecoders = new ConcurrentHashMap<>();
+
     public RecordRowMapper(Table table, Class<T> type) {
         this.table = table;
         this.type = type;
+        this.plans = new PlanCache<>(this::createPlan);
+    }
+
+    /**
+     * Maps the binary {@code field} with {@code decoder} instead of {@link ResultSet#getBytes(int)}: the field is
+     * left empty in the record and the decoder reads the column stream into the mapped object. Must be set
+     * before the mapper is used.
+     */
+    public void setBinaryDecoder(Field<byte[]> field, BinaryDecoder<? super T> decoder) {
+        if (!field.getDataType().isBinary()) {
+            throw new IllegalArgumentException("Field " + field.getName() + " is not binary");
+        }
+        binaryDecoders.put(field.getName(), decoder);
+    }
+
+    @Override
+    public void prepare(String... columnNames) {
+        plans.get(columnNames);
     }
 
     @Override
     public T mapRow(ResultSet resultSet, int i) throws SQLException {
-        ResultSetMetaData rsMetaData = resultSet.getMetaData();
-        int columnCount = rsMetaData.getColumnCount();
+        ColumnPlan<T> plan = plans.get(resultSet, i);
 
         TableRecord record = new TableRecordImpl(table);
-        for (int column = 1; column <= columnCount; column++) {
-            String columnName = rsMetaData.getColumnName(column);
-            Field field = record.field(columnName);
-
-            if (field != null) {
-                Object value = getFieldValue(field, resultSet);
-                if (!resultSet.wasNull()) {
-                    record.set(field, value);
-                }
+        for (int j = 0; j < plan.columns.length; j++) {
+            Object value = plan.extractors[j].extract(resultSet, plan.columns[j]);
+            if (!resultSet.wasNull()) {
+                record.set(plan.fields[j], value);
+            }
+        }
+        T target = record.into(type);
+        for (int j = 0; j < plan.decodedColumns.length; j++) {
+            decode(resultSet, plan.decodedColumns[j], plan.decoders[j], target);
+        }
+        return target;
+    }
+
+    private void decode(ResultSet resultSet, int column, BinaryDecoder<? super T> decoder, T target)
+            throws SQLException {
+        try (InputStream input = resultSet.getBinaryStream(column)) {
+            if (input != null) {
+                decoder.decode(input, target);
             }
+        } catch (IOException ex) {
+            throw new SQLException("Failed to decode column " + column, ex);
         }
-        return record.into(type);
     }
 
-    private Object getFieldValue(Field field, ResultSet resultSet) throws SQLException {
-        if (field.getDataType().isBinary()) {
-            return resultSet.getBytes(field.getName());
+    private ColumnPlan<T> createPlan(String[] columnNames) {
+        List<Integer> columns = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+        List<Integer> decodedColumns = new ArrayList<>();
+        List<BinaryDecoder<? super T>> decoders = new ArrayList<>();
+        Set<String> mappedFields = new HashSet<>();
+        for (int column = 1; column <= columnNames.length; column++) {
+            Field field = table.field(columnNames[column - 1]);
+            // duplicate labels (joins) are read from the first matching column, as ResultSet#findColumn does
+            if (field == null || !mappedFields.add(field.getName())) {
+                continue;
+            }
+            BinaryDecoder<? super T> decoder = binaryDecoders.get(field.getName());
+            if (decoder != null) {
+                decodedColumns.add(column);
+                decoders.add(decoder);
+            } else {
+                columns.add(column);
+                fields.add(field);
+            }
         }
-        if (field.getType().isEnum()) {
-            return TypeUtil.toEnumField(resultSet.getString(field.getName()), field.getType());
+        return new ColumnPlan<>(columns, fields, decodedColumns, decoders);
+    }
+
+    private static class ColumnPlan<T> {
+
+        private final int[] columns;
+
+        private final Field[] fields;
+
+        private final FieldExtractor[] extractors;
+
+        private final int[] decodedColumns;
+
+        private final BinaryDecoder<? super T>[] decoders;
+
+        @SuppressWarnings("unchecked")
+        private ColumnPlan(List<Integer> columns, List<Field> fields,
+                           List<Integer> decodedColumns, List<BinaryDecoder<? super T>> decoders) {
+            this.columns = new int[columns.size()];
+            this.fields = fields.toArray(new Field[0]);
+            this.extractors = new FieldExtractor[fields.size()];
+            for (int j = 0; j < this.columns.length; j++) {
+                this.columns[j] = columns.get(j);
+                this.extractors[j] = FieldExtractor.forField(this.fields[j]);
+            }
+            this.decodedColumns = decodedColumns.stream().mapToInt(Integer::intValue).toArray();
+            this.decoders = decoders.toArray(new BinaryDecoder[0]);
         }
-        return resultSet.getObject(field.getName(), field.getType());
     }
 }
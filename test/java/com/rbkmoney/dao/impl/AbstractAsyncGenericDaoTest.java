@@ -0,0 +1,100 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.dao.DaoRejectedException;
+import org.jooq.Query;
+import org.jooq.conf.ParamType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.jdbc.core.namedparam.EmptySqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import static org.mockito.Mockito.*;
+
+public class AbstractAsyncGenericDaoTest {
+
+    @Test
+    public void executeAsyncTest() throws Exception {
+        ExecutorService executor = DaoExecutors.newVirtualThreadExecutor("test-async", 1);
+        try {
+            TestAsyncDao testDaoSpy = spy(new TestAsyncDao(mock(DataSource.class), executor));
+            NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+            when(namedParameterJdbcTemplateMock.update(anyString(), any(SqlParameterSource.class))).thenReturn(3);
+            when(testDaoSpy.getNamedParameterJdbcTemplate()).thenReturn(namedParameterJdbcTemplateMock);
+
+            Assert.assertEquals(Integer.valueOf(3),
+                    testDaoSpy.executeAsync("test sql", EmptySqlParameterSource.INSTANCE).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectWhenSaturatedTest() throws Exception {
+        ExecutorService executor = DaoExecutors.newVirtualThreadExecutor("test-async", 1);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            TestAsyncDao testDao = new TestAsyncDao(mock(DataSource.class), executor);
+            CompletableFuture<Object> running = testDao.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            });
+
+            CompletableFuture<Integer> rejected = testDao.executeAsync("test sql", EmptySqlParameterSource.INSTANCE);
+            try {
+                rejected.get();
+                Assert.fail();
+            } catch (ExecutionException ex) {
+                Assert.assertTrue(ex.getCause() instanceof DaoRejectedException);
+            }
+            latch.countDown();
+            running.get();
+        } finally {
+            latch.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void batchExecuteAsyncRendersOnCallingThreadTest() throws Exception {
+        List<Runnable> submitted = new ArrayList<>();
+        TestAsyncDao testDaoSpy = spy(new TestAsyncDao(mock(DataSource.class), submitted::add));
+        NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplateMock.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{1});
+        when(testDaoSpy.getNamedParameterJdbcTemplate()).thenReturn(namedParameterJdbcTemplateMock);
+        Query queryMock = mock(Query.class);
+        when(queryMock.getSQL(ParamType.NAMED)).thenReturn("test sql");
+        when(queryMock.getParams()).thenReturn(Collections.emptyMap());
+
+        CompletableFuture<Long> future = testDaoSpy.batchExecuteAsync(Collections.singletonList(queryMock));
+
+        verify(queryMock).getSQL(ParamType.NAMED);
+        Assert.assertFalse(future.isDone());
+        Assert.assertEquals(1, submitted.size());
+        submitted.get(0).run();
+        Assert.assertEquals(Long.valueOf(1), future.get());
+        verify(queryMock).getSQL(ParamType.NAMED);
+    }
+
+    private static class TestAsyncDao extends AbstractAsyncGenericDao {
+
+        TestAsyncDao(DataSource dataSource, Executor executor) {
+            super(dataSource, executor);
+        }
+    }
+}
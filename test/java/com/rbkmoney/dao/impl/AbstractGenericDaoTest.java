@@ -1,33 +1,71 @@
 package com.rbkmoney.dao.impl;
 
+import com.rbkmoney.dao.DaoDeadline;
 import com.rbkmoney.dao.DaoException;
+import com.rbkmoney.dao.DaoRejectedException;
+import com.rbkmoney.dao.MultiFetch;
+import com.rbkmoney.dao.metrics.ExplainSink;
+import com.rbkmoney.dao.metrics.MicrometerDaoMetrics;
+import com.rbkmoney.dao.metrics.StatementIds;
+import com.rbkmoney.dao.metrics.StatementType;
+import com.rbkmoney.mapper.TestTable.TestRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.jooq.DataType;
+import org.jooq.EnumType;
+import org.jooq.Field;
 import org.jooq.Param;
 import org.jooq.Query;
+import org.jooq.SortOrder;
 import org.jooq.conf.ParamType;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.namedparam.EmptySqlParameterSource;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 
 import javax.sql.DataSource;
-import java.sql.Types;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.*;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static com.rbkmoney.mapper.TestTable.TEST_TABLE;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
 public class AbstractGenericDaoTest {
 
+    private DataSource dataSourceMock;
+
     private TestDao testDaoSpy;
 
     @Before
     public void setUp() throws Exception {
-        testDaoSpy = spy(new TestDao(mock(DataSource.class)));
+        dataSourceMock = mock(DataSource.class);
+        testDaoSpy = spy(new TestDao(dataSourceMock));
     }
 
     @Test
@@ -76,6 +114,642 @@ public class AbstractGenericDaoTest {
         final long rowsAffected = testDaoSpy.batchExecute(queryList, 2);
     }
 
+    @Test
+    public void batchExecuteChunksTest() {
+        final NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplateMock.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{1, 1}, new int[]{1, 1}, new int[]{1});
+        testDaoSpy.setMaxBatchSize(2);
+
+        final List<SqlParameterSource> parameterSources = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            parameterSources.add(new MapSqlParameterSource("1", i));
+        }
+        final long rowsAffected = testDaoSpy.batchExecute("test sql", parameterSources, 5,
+                namedParameterJdbcTemplateMock);
+
+        Assert.assertEquals(5, rowsAffected);
+        verify(namedParameterJdbcTemplateMock, times(3)).batchUpdate(anyString(), any(SqlParameterSource[].class));
+    }
+
+    @Test
+    public void batchExecuteRewriteInsertTest() {
+        final NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplateMock.update(anyString(), any(SqlParameterSource.class))).thenReturn(2, 1);
+        testDaoSpy.setMaxBatchSize(2);
+        testDaoSpy.setRewriteBatchedInserts(true);
+
+        final List<SqlParameterSource> parameterSources = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            parameterSources.add(new MapSqlParameterSource("1", i)
+                    .addValue("2", LocalDateTime.now(), Types.OTHER));
+        }
+        final long rowsAffected = testDaoSpy.batchExecute(
+                "insert into \"test\" (\"id\", \"created_at\") values (:1, cast(:2 as timestamp)) " +
+                        "on conflict do nothing",
+                parameterSources, 3, namedParameterJdbcTemplateMock);
+
+        Assert.assertEquals(3, rowsAffected);
+        verify(namedParameterJdbcTemplateMock).update(
+                eq("insert into \"test\" (\"id\", \"created_at\") values " +
+                        "(:1_0, cast(:2_0 as timestamp)), (:1_1, cast(:2_1 as timestamp)) on conflict do nothing"),
+                argThat((SqlParameterSource source) -> Integer.valueOf(1).equals(source.getValue("1_1"))
+                        && source.getSqlType("2_1") == Types.OTHER));
+        verify(namedParameterJdbcTemplateMock).update(
+                eq("insert into \"test\" (\"id\", \"created_at\") values " +
+                        "(:1_0, cast(:2_0 as timestamp)) on conflict do nothing"),
+                any(SqlParameterSource.class));
+        verify(namedParameterJdbcTemplateMock, never()).batchUpdate(anyString(), any(SqlParameterSource[].class));
+    }
+
+    @Test
+    public void batchExecuteParallelTest() {
+        final NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = parallelTemplateMock();
+        when(namedParameterJdbcTemplateMock.batchUpdate(eq("first sql"), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{1, 1});
+        when(namedParameterJdbcTemplateMock.batchUpdate(eq("second sql"), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{2});
+        final ExecutorService executor = DaoExecutors.newBoundedExecutor("test-batch", 2, 0);
+        testDaoSpy.setParallelExecutor(executor);
+        testDaoSpy.setBatchParallelism(2);
+
+        try {
+            final List<Query> queries = Arrays.asList(
+                    queryMock("first sql"), queryMock("second sql"), queryMock("first sql"));
+            Assert.assertEquals(4, testDaoSpy.batchExecute(queries, -1, namedParameterJdbcTemplateMock));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = DaoException.class)
+    public void batchExecuteParallelFailureTest() {
+        final NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = parallelTemplateMock();
+        when(namedParameterJdbcTemplateMock.batchUpdate(eq("first sql"), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{1});
+        when(namedParameterJdbcTemplateMock.batchUpdate(eq("second sql"), any(SqlParameterSource[].class)))
+                .thenThrow(new DataIntegrityViolationException("test"));
+        final ExecutorService executor = DaoExecutors.newBoundedExecutor("test-batch", 2, 0);
+        testDaoSpy.setParallelExecutor(executor);
+        testDaoSpy.setBatchParallelism(2);
+
+        try {
+            testDaoSpy.batchExecute(Arrays.asList(queryMock("first sql"), queryMock("second sql")), -1,
+                    namedParameterJdbcTemplateMock);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void bulkCopyTest() throws Exception {
+        when(dataSourceMock.getConnection()).thenReturn(mock(Connection.class));
+        final StringBuilder copySql = new StringBuilder();
+        final StringBuilder copyData = new StringBuilder();
+        testDaoSpy.setCopySink((connection, sql, data) -> {
+            copySql.append(sql);
+            char[] buffer = new char[7];
+            int read;
+            while ((read = data.read(buffer)) != -1) {
+                copyData.append(buffer, 0, read);
+            }
+            return 2;
+        });
+
+        final TestRecord first = new TestRecord();
+        first.set(TEST_TABLE.ID, 1L);
+        first.set(TEST_TABLE.NAME, "tab\tnull\u0000back\\slash");
+        first.set(TEST_TABLE.PAYLOAD, new byte[]{0x0a, (byte) 0xff});
+        final TestRecord second = new TestRecord();
+        second.set(TEST_TABLE.ID, 2L);
+
+        final long rowsCopied = testDaoSpy.bulkCopy(TEST_TABLE, Arrays.asList(first, second));
+
+        Assert.assertEquals(2, rowsCopied);
+        Assert.assertEquals("copy \"test_table\" (\"id\", \"name\", \"payload\") from stdin", copySql.toString());
+        Assert.assertEquals("1\ttab\\tnull\\\\u0000back\\\\slash\t\\\\x0aff\n2\t\\N\t\\N\n",
+                copyData.toString());
+    }
+
+    @Test
+    public void renderCacheTest() {
+        testDaoSpy.setRenderCacheSize(1);
+        final Query first = testDaoSpy.getDslContext().selectFrom(TEST_TABLE).where(TEST_TABLE.ID.eq(1L));
+        final Map<String, Param<?>> secondParams = paramMapMock("1", 2L, Long.class);
+        final Query second = mock(Query.class);
+        when(second.getParams()).thenReturn(secondParams);
+
+        final String namedSql = testDaoSpy.renderNamedSql("byId", first);
+        Assert.assertEquals(namedSql, testDaoSpy.renderNamedSql("byId", second));
+        Assert.assertEquals(2L, testDaoSpy.toSqlParameterSource(second).getValue("1"));
+        verify(second, never()).getSQL(any(ParamType.class));
+        Assert.assertEquals(1, testDaoSpy.getRenderCacheHits());
+        Assert.assertEquals(1, testDaoSpy.getRenderCacheMisses());
+    }
+
+    @Test
+    public void metricsTest() {
+        final NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplateMock.update(anyString(), any(SqlParameterSource.class)))
+                .thenReturn(2)
+                .thenThrow(new DataIntegrityViolationException("test"));
+        when(testDaoSpy.getNamedParameterJdbcTemplate()).thenReturn(namedParameterJdbcTemplateMock);
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        testDaoSpy.setDaoMetrics(new MicrometerDaoMetrics(meterRegistry));
+
+        final String sql = "update \"public\".\"test\" set \"value\" = :1";
+        testDaoSpy.execute(sql, EmptySqlParameterSource.INSTANCE);
+        try {
+            testDaoSpy.execute(sql, EmptySqlParameterSource.INSTANCE);
+            Assert.fail();
+        } catch (DaoException ex) {
+            // expected
+        }
+
+        final String statementId = StatementIds.of(sql);
+        Assert.assertTrue(statementId.startsWith("update:public.test:"));
+        Assert.assertEquals(2, meterRegistry.get("dao.statement.duration")
+                .tags("type", "execute", "statement", statementId).timer().count());
+        Assert.assertEquals(2, meterRegistry.get("dao.statement.rows")
+                .tags("statement", statementId).summary().totalAmount(), 0);
+        Assert.assertEquals(1, meterRegistry.get("dao.statement.errors")
+                .tags("statement", statementId).counter().count(), 0);
+    }
+
+    @Test
+    public void metricsCardinalityTest() {
+        Assert.assertEquals(StatementIds.of("select * from test where a = :1 and id in (:2, :3)"),
+                StatementIds.of("select * from test where a = :1 and id in (:2, :3, :4, :5)"));
+        Assert.assertEquals(StatementIds.of("insert into test (id, name) values (:1, :2)"),
+                StatementIds.of("insert into test (id, name) values (:1, :2), (:3, :4)"));
+        Assert.assertNotEquals(StatementIds.of("select * from test where id = :1::bigint"),
+                StatementIds.of("select * from test where id = :1::int"));
+
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final MicrometerDaoMetrics metrics = new MicrometerDaoMetrics(meterRegistry, 1);
+        metrics.record(StatementType.FETCH, "first", 1, 1, 1, null);
+        metrics.record(StatementType.FETCH, "second", 1, 1, 1, null);
+        metrics.record(StatementType.FETCH, "third", 1, 1, 1, null);
+        Assert.assertEquals(2, meterRegistry.get("dao.statement.duration").timers().size());
+        Assert.assertEquals(2, meterRegistry.get("dao.statement.duration")
+                .tags("statement", "other").timer().count());
+    }
+
+    @Test
+    public void fetchPagesTest() throws SQLException {
+        final ResultSet resultSetMock = mock(ResultSet.class);
+        when(resultSetMock.getObject("id", Long.class)).thenReturn(2L);
+        final List<String> sqls = new ArrayList<>();
+        final List<SqlParameterSource> parameterSources = new ArrayList<>();
+        final NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplateMock.query(anyString(), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenAnswer(invocation -> {
+                    sqls.add(invocation.getArgument(0));
+                    parameterSources.add(invocation.getArgument(1));
+                    RowMapper<?> rowMapper = invocation.getArgument(2);
+                    int rows = sqls.size() == 1 ? 2 : 1;
+                    List<Object> page = new ArrayList<>();
+                    for (int i = 0; i < rows; i++) {
+                        page.add(rowMapper.mapRow(resultSetMock, i));
+                    }
+                    return page;
+                });
+        when(testDaoSpy.getNamedParameterJdbcTemplate()).thenReturn(namedParameterJdbcTemplateMock);
+        final ResultCache resultCache = new ResultCache(16,
+                CachePolicyResolver.forTables(CachePolicy.ttl(Duration.ofMinutes(1)), "test_table"));
+        testDaoSpy.setResultCache(resultCache);
+
+        final Iterator<List<String>> pages = testDaoSpy.fetchPages(
+                testDaoSpy.getDslContext().selectFrom(TEST_TABLE).where(TEST_TABLE.NAME.eq("test")),
+                Collections.singletonList(TEST_TABLE.ID),
+                SortOrder.ASC,
+                2,
+                (rs, rowNum) -> "row"
+        );
+
+        Assert.assertEquals(2, pages.next().size());
+        Assert.assertEquals(1, pages.next().size());
+        Assert.assertFalse(pages.hasNext());
+        Assert.assertEquals(2, sqls.size());
+        Assert.assertFalse(sqls.get(0).contains(">"));
+        Assert.assertTrue(sqls.get(1).contains("where (\"keyset_page\".\"id\") > (:2)"));
+        Assert.assertTrue(sqls.get(1).endsWith("order by \"keyset_page\".\"id\" asc limit :3"));
+        Assert.assertEquals("test", parameterSources.get(1).getValue("1"));
+        Assert.assertEquals(2L, parameterSources.get(1).getValue("2"));
+        Assert.assertEquals(0, resultCache.getMisses());
+    }
+
+    @Test
+    public void resultCacheTest() {
+        final NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplateMock.getJdbcTemplate()).thenReturn(mock(JdbcTemplate.class));
+        when(namedParameterJdbcTemplateMock.query(anyString(), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(Collections.singletonList("test"));
+        when(namedParameterJdbcTemplateMock.update(anyString(), any(SqlParameterSource.class))).thenReturn(1);
+        when(testDaoSpy.getNamedParameterJdbcTemplate()).thenReturn(namedParameterJdbcTemplateMock);
+        final ResultCache resultCache = new ResultCache(16,
+                CachePolicyResolver.forTables(CachePolicy.ttl(Duration.ofMinutes(1)), "test_table"));
+        testDaoSpy.setResultCache(resultCache);
+        final RowMapper<String> rowMapper = (rs, rowNum) -> rs.getString(1);
+
+        final List<String> first = testDaoSpy.fetch(
+                testDaoSpy.getDslContext().selectFrom(TEST_TABLE).where(TEST_TABLE.ID.eq(1L)), rowMapper);
+        final List<String> second = testDaoSpy.fetch(
+                testDaoSpy.getDslContext().selectFrom(TEST_TABLE).where(TEST_TABLE.ID.eq(1L)), rowMapper);
+        testDaoSpy.fetch(testDaoSpy.getDslContext().selectFrom(TEST_TABLE).where(TEST_TABLE.ID.eq(2L)), rowMapper);
+        Assert.assertEquals(first, second);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(1, resultCache.getHits());
+        Assert.assertEquals(2, resultCache.getMisses());
+
+        testDaoSpy.execute(testDaoSpy.getDslContext().update(TEST_TABLE).set(TEST_TABLE.NAME, "test"));
+        testDaoSpy.fetch(testDaoSpy.getDslContext().selectFrom(TEST_TABLE).where(TEST_TABLE.ID.eq(1L)), rowMapper);
+        Assert.assertEquals(1, resultCache.getHits());
+        verify(namedParameterJdbcTemplateMock, times(3))
+                .query(anyString(), any(SqlParameterSource.class), any(RowMapper.class));
+    }
+
+    @Test
+    public void inListsAsArraysTest() throws SQLException {
+        testDaoSpy.setInListsAsArrays(true);
+        final RenderedQuery first = testDaoSpy.render(
+                testDaoSpy.getDslContext().selectFrom(TEST_TABLE).where(TEST_TABLE.ID.in(1L, 2L)));
+        final RenderedQuery second = testDaoSpy.render(
+                testDaoSpy.getDslContext().selectFrom(TEST_TABLE).where(TEST_TABLE.ID.notIn(1L, 2L, 3L)));
+        Assert.assertTrue(first.getNamedSql().endsWith("where \"test_table\".\"id\" = any (:1::bigint[])"));
+        Assert.assertTrue(second.getNamedSql().endsWith("where \"test_table\".\"id\" <> all (:1::bigint[])"));
+
+        final SqlParameterSource sqlParameterSource = testDaoSpy.toSqlParameterSource(second.getParams());
+        Assert.assertEquals(Types.ARRAY, sqlParameterSource.getSqlType("1"));
+        final Array arrayMock = mock(Array.class);
+        final Connection connectionMock = mock(Connection.class);
+        when(connectionMock.createArrayOf("bigint", new Long[]{1L, 2L, 3L})).thenReturn(arrayMock);
+        final PreparedStatement statementMock = mock(PreparedStatement.class);
+        when(statementMock.getConnection()).thenReturn(connectionMock);
+        ((SqlTypeValue) sqlParameterSource.getValue("1")).setTypeValue(statementMock, 1, Types.ARRAY, null);
+        verify(statementMock).setArray(1, arrayMock);
+
+        Assert.assertTrue(testDaoSpy.render(
+                testDaoSpy.getDslContext().selectFrom(TEST_TABLE).where(DSL.field("x").in("a", "b"))
+        ).getNamedSql().endsWith("where x in (:1, :2)"));
+        final Field<TestStatus> status =
+                DSL.field(DSL.name("st"), SQLDataType.VARCHAR.asEnumDataType(TestStatus.class));
+        Assert.assertTrue(testDaoSpy.render(
+                testDaoSpy.getDslContext().selectFrom(TEST_TABLE).where(status.in(TestStatus.NEW, TestStatus.DONE))
+        ).getNamedSql().endsWith("where \"st\" in (:1, :2)"));
+
+        testDaoSpy.setInListsAsArrays(false);
+        Assert.assertTrue(testDaoSpy.render(
+                testDaoSpy.getDslContext().selectFrom(TEST_TABLE).where(TEST_TABLE.ID.in(1L, 2L))
+        ).getNamedSql().endsWith("in (:1, :2)"));
+    }
+
+    @Test
+    public void batchUpsertTest() {
+        final List<String> sqls = new ArrayList<>();
+        final List<SqlParameterSource> parameterSources = new ArrayList<>();
+        final NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplateMock.update(anyString(), any(SqlParameterSource.class)))
+                .thenAnswer(invocation -> {
+                    sqls.add(invocation.getArgument(0));
+                    parameterSources.add(invocation.getArgument(1));
+                    return 1;
+                });
+        when(testDaoSpy.getNamedParameterJdbcTemplate()).thenReturn(namedParameterJdbcTemplateMock);
+        testDaoSpy.setMaxBatchSize(1);
+
+        final List<TestRecord> records = new ArrayList<>();
+        for (String name : Arrays.asList("first", "second", "third")) {
+            TestRecord record = new TestRecord();
+            record.set(TEST_TABLE.ID, "first".equals(name) ? 1L : 2L);
+            record.set(TEST_TABLE.NAME, name);
+            records.add(record);
+        }
+
+        final long rowsAffected = testDaoSpy.batchUpsert(TEST_TABLE, records,
+                Collections.singletonList(TEST_TABLE.ID), Collections.singletonList(TEST_TABLE.NAME));
+
+        Assert.assertEquals(2, rowsAffected);
+        Assert.assertEquals(2, sqls.size());
+        Assert.assertEquals("insert into \"test_table\" (\"id\", \"name\") values (:1, :2) "
+                + "on conflict (\"id\") do update set \"name\" = \"excluded\".\"name\"", sqls.get(0));
+        Assert.assertEquals("third", parameterSources.get(1).getValue("2"));
+
+        sqls.clear();
+        final TestRecord idOnly = new TestRecord();
+        idOnly.set(TEST_TABLE.ID, 3L);
+        testDaoSpy.batchUpsert(TEST_TABLE, Arrays.asList(records.get(0), idOnly),
+                Collections.singletonList(TEST_TABLE.ID), Collections.singletonList(TEST_TABLE.NAME));
+        Assert.assertEquals(Arrays.asList(
+                "insert into \"test_table\" (\"id\", \"name\") values (:1, :2) "
+                        + "on conflict (\"id\") do update set \"name\" = \"excluded\".\"name\"",
+                "insert into \"test_table\" (\"id\") values (:1) on conflict (\"id\") do nothing"
+        ), sqls);
+
+        try {
+            testDaoSpy.batchUpsert(TEST_TABLE, records, Collections.singletonList(DSL.field("other")),
+                    Collections.emptyList());
+            Assert.fail();
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void batchExecuteGeneratedKeysTest() throws SQLException {
+        final Connection connectionMock = mock(Connection.class);
+        final PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        final ResultSet generatedKeysMock = mock(ResultSet.class);
+        final ResultSetMetaData metaDataMock = mock(ResultSetMetaData.class);
+        when(dataSourceMock.getConnection()).thenReturn(connectionMock);
+        when(connectionMock.prepareStatement("insert into test_table (name) values (?)",
+                Statement.RETURN_GENERATED_KEYS)).thenReturn(preparedStatementMock);
+        when(preparedStatementMock.executeBatch()).thenReturn(new int[]{1, 0, 1});
+        when(preparedStatementMock.getGeneratedKeys()).thenReturn(generatedKeysMock);
+        when(generatedKeysMock.next()).thenReturn(true, true, false);
+        when(generatedKeysMock.getMetaData()).thenReturn(metaDataMock);
+        when(generatedKeysMock.getObject(1)).thenReturn(10L, 11L);
+        when(metaDataMock.getColumnCount()).thenReturn(1);
+        when(metaDataMock.getColumnLabel(1)).thenReturn("id");
+
+        final List<SqlParameterSource> parameterSources = Stream.of("first", "duplicate", "second")
+                .map(name -> new MapSqlParameterSource("name", name))
+                .collect(Collectors.toList());
+        final GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        final long rowsAffected = testDaoSpy.batchExecute("insert into test_table (name) values (:name)",
+                parameterSources, new NamedParameterJdbcTemplate(dataSourceMock), keyHolder);
+
+        Assert.assertEquals(2, rowsAffected);
+        Assert.assertEquals(3, keyHolder.getKeyList().size());
+        Assert.assertEquals(10L, keyHolder.getKeyList().get(0).get("id"));
+        Assert.assertTrue(keyHolder.getKeyList().get(1).isEmpty());
+        Assert.assertEquals(11L, keyHolder.getKeyList().get(2).get("id"));
+        verify(preparedStatementMock, times(3)).addBatch();
+        verify(preparedStatementMock).setString(1, "duplicate");
+
+        when(preparedStatementMock.executeBatch()).thenReturn(new int[]{1, 2, 0});
+        when(generatedKeysMock.next()).thenReturn(true, true, true, false);
+        try {
+            testDaoSpy.batchExecute("insert into test_table (name) values (:name)", parameterSources,
+                    new NamedParameterJdbcTemplate(dataSourceMock), keyHolder);
+            Assert.fail();
+        } catch (DaoException ex) {
+            // expected
+        }
+        try {
+            testDaoSpy.batchExecute("insert into test_table (name) select unnest(array[:names])", Arrays.asList(
+                    new MapSqlParameterSource("names", Arrays.asList("a", "b")),
+                    new MapSqlParameterSource("names", Collections.singletonList("c"))
+            ), new NamedParameterJdbcTemplate(dataSourceMock), keyHolder);
+            Assert.fail();
+        } catch (DaoException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void fetchManyTest() throws SQLException {
+        final Connection connectionMock = mock(Connection.class);
+        final PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        final ResultSet namesMock = mock(ResultSet.class);
+        final ResultSet countMock = mock(ResultSet.class);
+        when(dataSourceMock.getConnection()).thenReturn(connectionMock);
+        when(connectionMock.prepareStatement(anyString())).thenReturn(preparedStatementMock);
+        when(preparedStatementMock.execute()).thenReturn(true);
+        when(preparedStatementMock.getMoreResults()).thenReturn(true, false);
+        when(preparedStatementMock.getResultSet()).thenReturn(namesMock, countMock);
+        when(namesMock.next()).thenReturn(true, true, false);
+        when(namesMock.getString(1)).thenReturn("first", "second");
+        when(countMock.next()).thenReturn(true, false);
+        when(countMock.getLong(1)).thenReturn(2L);
+
+        final MultiFetch multiFetch = new MultiFetch();
+        final MultiFetch.Result<List<String>> names = multiFetch.fetch(
+                testDaoSpy.getDslContext().select(TEST_TABLE.NAME).from(TEST_TABLE).where(TEST_TABLE.ID.gt(0L)),
+                (rs, rowNum) -> rs.getString(1)
+        );
+        final MultiFetch.Result<Long> count = multiFetch.fetchOne(
+                testDaoSpy.getDslContext().selectCount().from(TEST_TABLE).where(TEST_TABLE.NAME.eq("first")),
+                (rs, rowNum) -> rs.getLong(1)
+        );
+        final ResultCache resultCache = new ResultCache(16,
+                CachePolicyResolver.forTables(CachePolicy.ttl(Duration.ofMinutes(1)), "test_table"));
+        testDaoSpy.setResultCache(resultCache);
+        final String cachedSql = testDaoSpy.render(testDaoSpy.getDslContext().selectFrom(TEST_TABLE)).getNamedSql();
+        resultCache.get(StatementType.FETCH, cachedSql, new MapSqlParameterSource(), null, Collections::emptyList);
+        testDaoSpy.fetchMany(multiFetch, new NamedParameterJdbcTemplate(dataSourceMock));
+        resultCache.get(StatementType.FETCH, cachedSql, new MapSqlParameterSource(), null, Collections::emptyList);
+        Assert.assertEquals(1, resultCache.getHits());
+
+        Assert.assertEquals(Arrays.asList("first", "second"), names.get());
+        Assert.assertEquals(Long.valueOf(2L), count.get());
+        verify(connectionMock).prepareStatement("select \"test_table\".\"name\" from \"test_table\" "
+                + "where \"test_table\".\"id\" > ?;\nselect count(*) from \"test_table\" "
+                + "where \"test_table\".\"name\" = ?");
+        verify(preparedStatementMock).setObject(1, 0L);
+        verify(preparedStatementMock).setString(2, "first");
+    }
+
+    @Test
+    public void slowStatementExplainTest() {
+        final NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        final String namedSql = "select name from test_table where id = :id";
+        final SqlParameterSource parameterSource = new MapSqlParameterSource("id", 1L);
+        when(namedParameterJdbcTemplateMock.query(eq(namedSql), eq(parameterSource), any(RowMapper.class)))
+                .thenReturn(Collections.singletonList("first"));
+        when(namedParameterJdbcTemplateMock.queryForObject(
+                "explain (analyze, format json) " + namedSql, parameterSource, String.class))
+                .thenReturn("[{\"Plan\": {}}]");
+        final ExplainSink sinkMock = mock(ExplainSink.class);
+        testDaoSpy.setExplainSink(sinkMock);
+        testDaoSpy.setExplainAnalyze(true);
+        testDaoSpy.setSlowStatementThreshold(Duration.ZERO);
+
+        testDaoSpy.fetch(namedSql, parameterSource, (rs, rowNum) -> rs.getString(1), namedParameterJdbcTemplateMock);
+        testDaoSpy.fetch(namedSql, parameterSource, (rs, rowNum) -> rs.getString(1), namedParameterJdbcTemplateMock);
+
+        verify(sinkMock, timeout(5000)).accept(eq(StatementType.FETCH), eq(StatementIds.of(namedSql)),
+                eq(namedSql), anyLong(), eq("[{\"Plan\": {}}]"));
+        verify(namedParameterJdbcTemplateMock, times(1)).queryForObject(anyString(), any(SqlParameterSource.class),
+                eq(String.class));
+    }
+
+    @Test
+    public void explainAnalyzeSkipsWritesTest() {
+        final NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        final Query query = testDaoSpy.getDslContext().insertInto(TEST_TABLE)
+                .set(TEST_TABLE.ID, 1L)
+                .returning(TEST_TABLE.ID);
+        final String namedSql = testDaoSpy.render(query).getNamedSql();
+        when(namedParameterJdbcTemplateMock.queryForObject(eq(namedSql), any(SqlParameterSource.class),
+                any(RowMapper.class))).thenReturn(1L);
+        when(namedParameterJdbcTemplateMock.queryForObject(eq("explain (format json) " + namedSql),
+                any(SqlParameterSource.class), eq(String.class))).thenReturn("[{\"Plan\": {}}]");
+        final ExplainSink sinkMock = mock(ExplainSink.class);
+        testDaoSpy.setExplainSink(sinkMock);
+        testDaoSpy.setExplainAnalyze(true);
+        testDaoSpy.setSlowStatementThreshold(Duration.ZERO);
+
+        Assert.assertEquals(Long.valueOf(1L),
+                testDaoSpy.fetchOne(query, (rs, rowNum) -> rs.getLong(1), namedParameterJdbcTemplateMock));
+
+        verify(sinkMock, timeout(5000)).accept(eq(StatementType.FETCH_ONE), eq(StatementIds.of(namedSql)),
+                eq(namedSql), anyLong(), eq("[{\"Plan\": {}}]"));
+        Assert.assertTrue(SelectStatements.isSelect("(select 1) union (select 2)"));
+        Assert.assertTrue(SelectStatements.isSelect("with t as (select 1) select * from t"));
+        Assert.assertFalse(SelectStatements.isSelect("with t as (delete from a returning id) select * from t"));
+        Assert.assertFalse(SelectStatements.isSelect(namedSql));
+        Assert.assertTrue(SelectStatements.locksRows(
+                testDaoSpy.getDslContext().selectFrom(TEST_TABLE).forUpdate().skipLocked().getSQL()));
+        Assert.assertTrue(SelectStatements.locksRows("select * from a for no key update"));
+        Assert.assertFalse(SelectStatements.locksRows("select * from a where b = 'for'"));
+    }
+
+    @Test
+    public void bulkheadTest() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplateMock.update(anyString(), any(SqlParameterSource.class)))
+                .thenAnswer(invocation -> {
+                    started.countDown();
+                    release.await();
+                    return 1;
+                });
+        testDaoSpy.setMaxConcurrentStatements(StatementType.EXECUTE, 1);
+        testDaoSpy.setBulkheadMaxWait(Duration.ofMillis(10));
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Integer> first = executor.submit(() -> testDaoSpy.execute("update test_table set name = 'a'",
+                    EmptySqlParameterSource.INSTANCE, -1, namedParameterJdbcTemplateMock));
+            started.await();
+            try {
+                testDaoSpy.execute("update test_table set name = 'b'", EmptySqlParameterSource.INSTANCE, -1,
+                        namedParameterJdbcTemplateMock);
+                Assert.fail();
+            } catch (DaoRejectedException ex) {
+                // expected
+            }
+            release.countDown();
+            Assert.assertEquals(Integer.valueOf(1), first.get());
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(1, testDaoSpy.execute("update test_table set name = 'c'",
+                EmptySqlParameterSource.INSTANCE, -1, namedParameterJdbcTemplateMock));
+    }
+
+    @Test
+    public void deadlineTest() throws SQLException {
+        final Connection connectionMock = mock(Connection.class);
+        final PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        when(dataSourceMock.getConnection()).thenReturn(connectionMock);
+        when(connectionMock.prepareStatement("update test_table set name = 'a'")).thenReturn(preparedStatementMock);
+        when(preparedStatementMock.executeUpdate()).thenReturn(1);
+
+        final int rowsAffected = DaoDeadline.call(Duration.ofMillis(2500),
+                () -> testDaoSpy.execute("update test_table set name = 'a'", EmptySqlParameterSource.INSTANCE));
+
+        Assert.assertEquals(1, rowsAffected);
+        verify(preparedStatementMock).setQueryTimeout(3);
+
+        final PreparedStatement streamStatementMock = mock(PreparedStatement.class);
+        when(connectionMock.prepareStatement("select id from test_table")).thenReturn(streamStatementMock);
+        when(streamStatementMock.executeQuery()).thenReturn(mock(ResultSet.class));
+        DaoDeadline.run(Duration.ofMillis(1500), () -> testDaoSpy.fetchStream("select id from test_table",
+                new MapSqlParameterSource(), (rs, rowNum) -> rs.getLong(1)).close());
+        verify(streamStatementMock).setQueryTimeout(2);
+
+        try {
+            DaoDeadline.run(Duration.ZERO, () -> testDaoSpy.execute("update test_table set name = 'a'"));
+            Assert.fail();
+        } catch (DaoRejectedException ex) {
+            // expected
+        }
+        try {
+            DaoDeadline.run(Duration.ZERO, () -> testDaoSpy.bulkCopy(TEST_TABLE, Collections.emptyList()));
+            Assert.fail();
+        } catch (DaoRejectedException ex) {
+            // expected
+        }
+        Assert.assertNull(DaoDeadline.remainingNanos());
+    }
+
+    @Test
+    public void copyDeadlineTest() throws Exception {
+        final Connection connectionMock = mock(Connection.class);
+        final PreparedStatement settingStatementMock = mock(PreparedStatement.class);
+        final ResultSet settingMock = mock(ResultSet.class);
+        final PreparedStatement setConfigStatementMock = mock(PreparedStatement.class);
+        final PGConnection pgConnectionMock = mock(PGConnection.class);
+        final CopyManager copyManagerMock = mock(CopyManager.class);
+        when(connectionMock.getAutoCommit()).thenReturn(true);
+        when(connectionMock.prepareStatement("select setting from pg_settings where name = 'statement_timeout'"))
+                .thenReturn(settingStatementMock);
+        when(settingStatementMock.executeQuery()).thenReturn(settingMock);
+        when(settingMock.getString(1)).thenReturn("0");
+        when(connectionMock.prepareStatement("select set_config('statement_timeout', ?, ?)"))
+                .thenReturn(setConfigStatementMock);
+        when(connectionMock.unwrap(PGConnection.class)).thenReturn(pgConnectionMock);
+        when(pgConnectionMock.getCopyAPI()).thenReturn(copyManagerMock);
+        when(copyManagerMock.copyIn(anyString(), any(Reader.class))).thenReturn(2L);
+
+        final long rowsCopied = DaoDeadline.call(Duration.ofSeconds(10), () -> {
+            try {
+                return PgCopySink.INSTANCE.copyIn(connectionMock, "copy test_table from stdin", new StringReader(""));
+            } catch (SQLException | IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+
+        Assert.assertEquals(2L, rowsCopied);
+        final InOrder inOrder = inOrder(setConfigStatementMock, copyManagerMock);
+        inOrder.verify(setConfigStatementMock).setString(eq(1), argThat(timeout -> Long.parseLong(timeout) > 9000));
+        inOrder.verify(copyManagerMock).copyIn(anyString(), any(Reader.class));
+        inOrder.verify(setConfigStatementMock).setString(1, "0");
+        verify(setConfigStatementMock, times(2)).setBoolean(2, false);
+    }
+
+    @Test
+    public void fetchPartitionedTest() {
+        final List<SqlParameterSource> parameterSources = Collections.synchronizedList(new ArrayList<>());
+        final NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = parallelTemplateMock();
+        when(namedParameterJdbcTemplateMock.query(anyString(), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenAnswer(invocation -> {
+                    SqlParameterSource parameterSource = invocation.getArgument(1);
+                    parameterSources.add(parameterSource);
+                    return Collections.singletonList(parameterSource.getValue("2"));
+                });
+        when(testDaoSpy.getNamedParameterJdbcTemplate()).thenReturn(namedParameterJdbcTemplateMock);
+        final ExecutorService executor = DaoExecutors.newBoundedExecutor("scan", 2, 3);
+        testDaoSpy.setParallelExecutor(executor);
+        testDaoSpy.setScanParallelism(2);
+
+        final LocalDateTime from = LocalDateTime.of(2021, 1, 1, 0, 0);
+        final Field<LocalDateTime> timeField = DSL.field(DSL.name("created_at"), LocalDateTime.class);
+        try {
+            final List<Object> ordered = testDaoSpy.fetchPartitioned(TEST_TABLE.NAME.eq("test"), timeField, from,
+                    from.plusDays(25), Duration.ofDays(10),
+                    condition -> testDaoSpy.getDslContext().selectFrom(TEST_TABLE).where(condition),
+                    (rs, rowNum) -> null);
+            Assert.assertEquals(Arrays.asList(from, from.plusDays(10), from.plusDays(20)), ordered);
+            Assert.assertEquals(from.plusDays(25), parameterSources.stream()
+                    .filter(parameterSource -> from.plusDays(20).equals(parameterSource.getValue("2")))
+                    .findFirst().get().getValue("3"));
+
+            final List<Object> unordered = new ArrayList<>();
+            final long count = testDaoSpy.fetchPartitioned(TEST_TABLE.NAME.eq("test"), timeField, from,
+                    from.plusDays(25), Duration.ofDays(10),
+                    condition -> testDaoSpy.getDslContext().selectFrom(TEST_TABLE).where(condition),
+                    (rs, rowNum) -> null, unordered::add);
+            Assert.assertEquals(3, count);
+            Assert.assertEquals(new HashSet<>(ordered), new HashSet<>(unordered));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void toSqlParameterSourceNullByteTest() {
         final Map<String, Param<?>> paramMap = paramMapMock("test", "\u0000", String.class);
@@ -92,6 +766,115 @@ public class AbstractGenericDaoTest {
         Assert.assertEquals(Types.OTHER, sqlParameterSource.getSqlType("testDate"));
     }
 
+    @Test
+    public void toSqlParameterSourceTypesTest() {
+        final String clean = "clean";
+        final Map<String, Param<?>> paramMap = new LinkedHashMap<>(paramMapMock("1", clean, String.class));
+        paramMap.putAll(paramMapMock("2", 1L, Long.class));
+        paramMap.putAll(paramMapMock("3", null, String.class));
+        final SqlParameterSource sqlParameterSource = testDaoSpy.toSqlParameterSource(paramMap);
+        Assert.assertSame(clean, sqlParameterSource.getValue("1"));
+        Assert.assertEquals(SqlParameterSource.TYPE_UNKNOWN, sqlParameterSource.getSqlType("1"));
+        Assert.assertEquals(1L, sqlParameterSource.getValue("2"));
+        Assert.assertEquals(SqlParameterSource.TYPE_UNKNOWN, sqlParameterSource.getSqlType("2"));
+        Assert.assertTrue(sqlParameterSource.hasValue("3"));
+        Assert.assertNull(sqlParameterSource.getValue("3"));
+        Assert.assertFalse(sqlParameterSource.hasValue("4"));
+        Assert.assertArrayEquals(new String[]{"1", "2", "3"}, sqlParameterSource.getParameterNames());
+    }
+
+    @Test
+    public void fetchStreamTest() throws SQLException {
+        final ResultSet resultSetMock = mock(ResultSet.class);
+        when(resultSetMock.next()).thenReturn(true, true, false);
+        when(resultSetMock.getLong(1)).thenReturn(1L, 2L);
+        final PreparedStatement statementMock = mock(PreparedStatement.class);
+        when(statementMock.executeQuery()).thenReturn(resultSetMock);
+        final Connection connectionMock = mock(Connection.class);
+        when(connectionMock.getAutoCommit()).thenReturn(true);
+        when(connectionMock.prepareStatement(anyString())).thenReturn(statementMock);
+        when(dataSourceMock.getConnection()).thenReturn(connectionMock);
+        testDaoSpy.setStreamFetchSize(2);
+        testDaoSpy.getJdbcTemplate().setQueryTimeout(5);
+        testDaoSpy.getJdbcTemplate().setMaxRows(10);
+
+        final List<Long> result;
+        try (Stream<Long> stream = testDaoSpy.fetchStream("select id from test", new MapSqlParameterSource(),
+                (rs, i) -> rs.getLong(1))) {
+            final Spliterator<Long> spliterator = stream.spliterator();
+            Assert.assertFalse(spliterator.hasCharacteristics(Spliterator.NONNULL));
+            result = new ArrayList<>();
+            spliterator.forEachRemaining(result::add);
+        }
+
+        Assert.assertEquals(Arrays.asList(1L, 2L), result);
+        verify(statementMock).setFetchSize(2);
+        verify(statementMock).setQueryTimeout(5);
+        verify(statementMock).setMaxRows(10);
+        verify(connectionMock).setAutoCommit(false);
+        verify(connectionMock).commit();
+        verify(connectionMock).setAutoCommit(true);
+        verify(resultSetMock).close();
+        verify(statementMock).close();
+        verify(connectionMock).close();
+    }
+
+    @Test
+    public void fetchStreamExceptionTest() throws SQLException {
+        final PreparedStatement statementMock = mock(PreparedStatement.class);
+        when(statementMock.executeQuery()).thenThrow(new SQLException("test"));
+        final Connection connectionMock = mock(Connection.class);
+        when(connectionMock.prepareStatement(anyString())).thenReturn(statementMock);
+        when(dataSourceMock.getConnection()).thenReturn(connectionMock);
+
+        try {
+            testDaoSpy.fetch("select id from test", new MapSqlParameterSource(), (rs, i) -> rs.getLong(1),
+                    id -> Assert.fail());
+            Assert.fail();
+        } catch (DaoException ex) {
+            verify(statementMock).close();
+            verify(connectionMock, atLeastOnce()).close();
+        }
+    }
+
+    @Test
+    public void fetchStreamCommitFailureTest() throws SQLException {
+        final ResultSet resultSetMock = mock(ResultSet.class);
+        when(resultSetMock.next()).thenReturn(false);
+        final PreparedStatement statementMock = mock(PreparedStatement.class);
+        when(statementMock.executeQuery()).thenReturn(resultSetMock);
+        final Connection connectionMock = mock(Connection.class);
+        when(connectionMock.getAutoCommit()).thenReturn(true);
+        when(connectionMock.prepareStatement(anyString())).thenReturn(statementMock);
+        doThrow(new SQLException("test")).when(connectionMock).commit();
+        when(dataSourceMock.getConnection()).thenReturn(connectionMock);
+
+        try (Stream<Long> stream = testDaoSpy.fetchStream("select id from test", new MapSqlParameterSource(),
+                (rs, i) -> rs.getLong(1))) {
+            stream.count();
+            Assert.fail();
+        } catch (DaoException ex) {
+            final InOrder inOrder = inOrder(connectionMock);
+            inOrder.verify(connectionMock).rollback();
+            inOrder.verify(connectionMock).setAutoCommit(true);
+            inOrder.verify(connectionMock).close();
+        }
+    }
+
+    private NamedParameterJdbcTemplate parallelTemplateMock() {
+        final NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplateMock.getJdbcTemplate()).thenReturn(new JdbcTemplate(dataSourceMock));
+        return namedParameterJdbcTemplateMock;
+    }
+
+    private Query queryMock(String sql) {
+        final Map<String, Param<?>> paramMap = paramMapMock("testLong", 1L, Long.class);
+        final Query queryMock = mock(Query.class);
+        when(queryMock.getSQL(ParamType.NAMED)).thenReturn(sql);
+        when(queryMock.getParams()).thenReturn(paramMap);
+        return queryMock;
+    }
+
     private Map<String, Param<?>> paramMapMock(String key, Object value, Class<?> dataType) {
         final Param paramMock = mock(Param.class);
         final DataType dataTypeMock = mock(DataType.class);
@@ -111,4 +894,18 @@ public class AbstractGenericDaoTest {
         }
     }
 
+    private enum TestStatus implements EnumType {
+        NEW, DONE;
+
+        @Override
+        public String getLiteral() {
+            return name().toLowerCase();
+        }
+
+        @Override
+        public String getName() {
+            return "test_status";
+        }
+    }
+
 }
@@ -0,0 +1,44 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.dao.ColumnType;
+import com.rbkmoney.dao.PrimitiveColumns;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.mockito.Mockito.*;
+
+public class PrimitiveColumnsExtractorTest {
+
+    @Test
+    public void extractDataTest() throws SQLException {
+        final int rows = 100;
+        final int nullRow = 7;
+        final int[] position = new int[2];
+        final ResultSet resultSetMock = mock(ResultSet.class);
+        when(resultSetMock.next()).thenAnswer(invocation -> ++position[0] <= rows);
+        when(resultSetMock.getLong(1)).thenAnswer(invocation -> {
+            position[1] = 1;
+            return (long) position[0];
+        });
+        when(resultSetMock.getDouble(2)).thenAnswer(invocation -> {
+            position[1] = 2;
+            return position[0] == nullRow ? 0 : position[0] / 2.0;
+        });
+        when(resultSetMock.wasNull()).thenAnswer(invocation -> position[0] == nullRow && position[1] == 2);
+
+        final PrimitiveColumns columns = new PrimitiveColumnsExtractor(
+                new ColumnType[]{ColumnType.LONG, ColumnType.DOUBLE}
+        ).extractData(resultSetMock);
+
+        Assert.assertEquals(rows, columns.size());
+        Assert.assertEquals(rows, columns.getLongs(0).length);
+        Assert.assertEquals(rows, columns.getLongs(0)[rows - 1]);
+        Assert.assertEquals(rows / 2.0, columns.getDoubles(1)[rows - 1], 0);
+        Assert.assertTrue(columns.isNull(1, nullRow - 1));
+        Assert.assertFalse(columns.isNull(0, nullRow - 1));
+        Assert.assertEquals(1, columns.getNulls(1).cardinality());
+    }
+}
@@ -0,0 +1,98 @@
+package com.rbkmoney.dao.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+public class ReplicaRouterTest {
+
+    @Test
+    public void roundRobinTest() {
+        NamedParameterJdbcTemplate primary = mock(NamedParameterJdbcTemplate.class);
+        NamedParameterJdbcTemplate first = mock(NamedParameterJdbcTemplate.class);
+        NamedParameterJdbcTemplate second = mock(NamedParameterJdbcTemplate.class);
+        ReplicaRouter router = new ReplicaRouter(Arrays.asList(first, second), ReplicaSelection.ROUND_ROBIN, null,
+                Duration.ofSeconds(1), Runnable::run);
+
+        Assert.assertSame(first, router.select(primary));
+        Assert.assertSame(second, router.select(primary));
+        Assert.assertSame(first, router.select(primary));
+    }
+
+    @Test
+    public void leastLoadedTest() {
+        NamedParameterJdbcTemplate primary = mock(NamedParameterJdbcTemplate.class);
+        NamedParameterJdbcTemplate first = mock(NamedParameterJdbcTemplate.class);
+        NamedParameterJdbcTemplate second = mock(NamedParameterJdbcTemplate.class);
+        ReplicaRouter router = new ReplicaRouter(Arrays.asList(first, second), ReplicaSelection.LEAST_LOADED, null,
+                Duration.ofSeconds(1), Runnable::run);
+
+        NamedParameterJdbcTemplate nested = router.read(
+                outer -> router.read(inner -> {
+                    Assert.assertNotSame(outer, inner);
+                    return inner;
+                }, primary),
+                primary
+        );
+        Assert.assertNotSame(primary, nested);
+    }
+
+    @Test
+    public void replicationLagTest() {
+        NamedParameterJdbcTemplate primary = mock(NamedParameterJdbcTemplate.class);
+        NamedParameterJdbcTemplate lagging = replicaMock(5000L);
+        NamedParameterJdbcTemplate upToDate = replicaMock(10L);
+        ReplicaRouter router = new ReplicaRouter(Arrays.asList(lagging, upToDate), ReplicaSelection.ROUND_ROBIN,
+                Duration.ofSeconds(1), Duration.ofMinutes(1), Runnable::run);
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertSame(upToDate, router.select(primary));
+        }
+        verify(lagging.getJdbcTemplate(), times(1)).queryForObject(ReplicaRouter.REPLICATION_LAG_SQL, Long.class);
+
+        ReplicaRouter laggingOnly = new ReplicaRouter(Arrays.asList(replicaMock(5000L)), ReplicaSelection.ROUND_ROBIN,
+                Duration.ofSeconds(1), Duration.ofMinutes(1), Runnable::run);
+        Assert.assertSame(primary, laggingOnly.select(primary));
+    }
+
+    @Test
+    public void lagCheckDoesNotBlockReadsTest() {
+        NamedParameterJdbcTemplate primary = mock(NamedParameterJdbcTemplate.class);
+        NamedParameterJdbcTemplate replica = replicaMock(10L);
+        NamedParameterJdbcTemplate failing = mock(NamedParameterJdbcTemplate.class);
+        JdbcTemplate failingJdbcTemplate = mock(JdbcTemplate.class);
+        when(failingJdbcTemplate.queryForObject(ReplicaRouter.REPLICATION_LAG_SQL, Long.class))
+                .thenThrow(new CannotGetJdbcConnectionException("test"));
+        when(failing.getJdbcTemplate()).thenReturn(failingJdbcTemplate);
+        List<Runnable> lagChecks = new ArrayList<>();
+        ReplicaRouter router = new ReplicaRouter(Arrays.asList(failing, replica), ReplicaSelection.ROUND_ROBIN,
+                Duration.ofSeconds(1), Duration.ofMinutes(1), lagChecks::add);
+
+        Assert.assertSame(primary, router.select(primary));
+        verify(replica, never()).getJdbcTemplate();
+        Assert.assertEquals(2, lagChecks.size());
+
+        lagChecks.forEach(Runnable::run);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertSame(replica, router.select(primary));
+        }
+        Assert.assertEquals(2, lagChecks.size());
+    }
+
+    private NamedParameterJdbcTemplate replicaMock(long lagMillis) {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(ReplicaRouter.REPLICATION_LAG_SQL, Long.class)).thenReturn(lagMillis);
+        NamedParameterJdbcTemplate template = mock(NamedParameterJdbcTemplate.class);
+        when(template.getJdbcTemplate()).thenReturn(jdbcTemplate);
+        return template;
+    }
+}
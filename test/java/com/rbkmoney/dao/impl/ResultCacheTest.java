@@ -0,0 +1,99 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.dao.metrics.StatementType;
+import com.rbkmoney.mapper.TestTable;
+import org.jooq.DSLContext;
+import org.jooq.Query;
+import org.jooq.SQLDialect;
+import org.jooq.conf.ParamType;
+import org.jooq.impl.DSL;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.rbkmoney.mapper.TestTable.TEST_TABLE;
+import static org.mockito.Mockito.*;
+
+public class ResultCacheTest {
+
+    private final DSLContext dslContext = DSL.using(SQLDialect.POSTGRES);
+
+    @Test
+    public void tablesOfTest() {
+        TestTable alias = TEST_TABLE.as("t");
+        Assert.assertEquals(
+                new HashSet<>(Arrays.asList("test_table", "other")),
+                ResultCache.tablesOf(dslContext.select(alias.ID)
+                        .from(alias)
+                        .where(alias.ID.in(DSL.select(DSL.field(DSL.name("id"), Long.class))
+                                .from(DSL.table(DSL.name("other"))))))
+        );
+        Assert.assertEquals(
+                new HashSet<>(Arrays.asList("test_table")),
+                ResultCache.tablesOf(dslContext.update(TEST_TABLE).set(TEST_TABLE.NAME, "name"))
+        );
+        Assert.assertNull(ResultCache.tablesOf(dslContext.selectFrom(DSL.table("plain_sql"))));
+    }
+
+    @Test
+    public void writeReturningIsNotCachedTest() {
+        ResultCache resultCache = new ResultCache(16, (namedSql, tables) -> CachePolicy.ttl(Duration.ofMinutes(1)));
+        Query select = dslContext.selectFrom(TEST_TABLE).where(TEST_TABLE.ID.eq(1L));
+        Query insert = dslContext.insertInto(TEST_TABLE).set(TEST_TABLE.NAME, "name").returning(TEST_TABLE.ID);
+        AtomicInteger loads = new AtomicInteger();
+        for (Query query : Arrays.asList(select, insert)) {
+            String namedSql = query.getSQL(ParamType.NAMED);
+            resultCache.register(namedSql, query);
+            SqlParameterSource parameterSource = new MapSqlParameterSource("1", 1L);
+            resultCache.get(StatementType.FETCH_ONE, namedSql, parameterSource, null, loads::incrementAndGet);
+            resultCache.get(StatementType.FETCH_ONE, namedSql, parameterSource, null, loads::incrementAndGet);
+        }
+        Assert.assertEquals(3, loads.get());
+        Assert.assertEquals(1, resultCache.getHits());
+    }
+
+    @Test
+    public void writeReturningInvalidatesTest() {
+        TestDao testDaoSpy = spy(new TestDao(mock(DataSource.class)));
+        NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplateMock.getJdbcTemplate()).thenReturn(mock(JdbcTemplate.class));
+        when(namedParameterJdbcTemplateMock.queryForObject(anyString(), any(SqlParameterSource.class),
+                any(RowMapper.class))).thenReturn(1L);
+        when(testDaoSpy.getNamedParameterJdbcTemplate()).thenReturn(namedParameterJdbcTemplateMock);
+        ResultCache resultCache = new ResultCache(16,
+                CachePolicyResolver.forTables(CachePolicy.ttl(Duration.ofMinutes(1)), "test_table"));
+        testDaoSpy.setResultCache(resultCache);
+        RowMapper<Long> rowMapper = (rs, rowNum) -> rs.getLong(1);
+
+        testDaoSpy.fetchOne(testDaoSpy.getDslContext().select(TEST_TABLE.ID).from(TEST_TABLE)
+                .where(TEST_TABLE.ID.eq(1L)), rowMapper);
+        testDaoSpy.fetchOne(testDaoSpy.getDslContext().select(TEST_TABLE.ID).from(TEST_TABLE)
+                .where(TEST_TABLE.ID.eq(1L)), rowMapper);
+        Assert.assertEquals(1, resultCache.getHits());
+
+        testDaoSpy.fetchOne(testDaoSpy.getDslContext().update(TEST_TABLE).set(TEST_TABLE.NAME, "name")
+                .where(TEST_TABLE.ID.eq(1L)).returning(TEST_TABLE.ID), rowMapper);
+        testDaoSpy.fetchOne(testDaoSpy.getDslContext().select(TEST_TABLE.ID).from(TEST_TABLE)
+                .where(TEST_TABLE.ID.eq(1L)), rowMapper);
+        Assert.assertEquals(1, resultCache.getHits());
+        verify(namedParameterJdbcTemplateMock, times(3))
+                .queryForObject(anyString(), any(SqlParameterSource.class), any(RowMapper.class));
+    }
+
+    private static class TestDao extends AbstractGenericDao {
+
+        TestDao(DataSource dataSource) {
+            super(dataSource);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.mapper.PlannedRowMapper;
+import org.jooq.Query;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import static com.rbkmoney.mapper.TestTable.TEST_TABLE;
+import static org.mockito.Mockito.*;
+
+public class WarmUpRegistryTest {
+
+    @Test
+    public void warmUpTest() throws SQLException {
+        DataSource dataSourceMock = mock(DataSource.class);
+        Connection connectionMock = mock(Connection.class);
+        PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        ResultSetMetaData metaDataMock = mock(ResultSetMetaData.class);
+        when(dataSourceMock.getConnection()).thenReturn(connectionMock);
+        when(connectionMock.prepareStatement(anyString())).thenReturn(preparedStatementMock);
+        when(connectionMock.prepareStatement(startsWith("update"))).thenThrow(new SQLException("syntax error"));
+        when(preparedStatementMock.getMetaData()).thenReturn(metaDataMock);
+        when(metaDataMock.getColumnCount()).thenReturn(2);
+        when(metaDataMock.getColumnName(1)).thenReturn("id");
+        when(metaDataMock.getColumnName(2)).thenReturn("name");
+
+        DataSource replicaMock = mock(DataSource.class);
+        Connection replicaConnectionMock = mock(Connection.class);
+        when(replicaMock.getConnection()).thenReturn(replicaConnectionMock);
+        when(replicaConnectionMock.prepareStatement(anyString())).thenReturn(preparedStatementMock);
+
+        TestDao testDao = new TestDao(dataSourceMock);
+        testDao.setReplicaDataSources(Collections.singletonList(replicaMock));
+        Query select = testDao.getDslContext().select(TEST_TABLE.ID, TEST_TABLE.NAME).from(TEST_TABLE)
+                .where(TEST_TABLE.ID.eq(1L));
+        Query update = testDao.getDslContext().update(TEST_TABLE).set(TEST_TABLE.NAME, "name")
+                .where(TEST_TABLE.ID.eq(1L));
+        PlannedRowMapper<?> rowMapperMock = mock(PlannedRowMapper.class);
+        WarmUpRegistry registry = new WarmUpRegistry();
+        registry.register(testDao, select, rowMapperMock);
+        registry.register(testDao, update);
+
+        WarmUpReport report = registry.warmUp(2);
+
+        Assert.assertEquals(2, report.getStatements());
+        Assert.assertEquals(2, report.getFailures());
+        verify(connectionMock, times(2))
+                .prepareStatement("select \"test_table\".\"id\", \"test_table\".\"name\" from \"test_table\" "
+                        + "where \"test_table\".\"id\" = ?");
+        verify(replicaConnectionMock, times(2))
+                .prepareStatement("select \"test_table\".\"id\", \"test_table\".\"name\" from \"test_table\" "
+                        + "where \"test_table\".\"id\" = ?");
+        verify(replicaConnectionMock, never()).prepareStatement(startsWith("update"));
+        verify(rowMapperMock, times(1)).prepare("id", "name");
+        verify(connectionMock, times(2)).close();
+        verify(replicaConnectionMock, times(2)).close();
+    }
+
+    private static class TestDao extends AbstractGenericDao {
+
+        TestDao(DataSource dataSource) {
+            super(dataSource);
+        }
+    }
+}
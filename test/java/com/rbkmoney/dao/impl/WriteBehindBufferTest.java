@@ -0,0 +1,139 @@
+package com.rbkmoney.dao.impl;
+
+import com.rbkmoney.dao.DaoException;
+import com.rbkmoney.dao.DaoRejectedException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static com.rbkmoney.mapper.TestTable.TEST_TABLE;
+import static org.mockito.Mockito.*;
+
+public class WriteBehindBufferTest {
+
+    @Test
+    public void coalesceWritesTest() throws Exception {
+        TestDao testDaoSpy = spy(new TestDao(mock(DataSource.class)));
+        NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplateMock.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{1, 0});
+        when(testDaoSpy.getNamedParameterJdbcTemplate()).thenReturn(namedParameterJdbcTemplateMock);
+
+        try (WriteBehindBuffer buffer = new WriteBehindBuffer(testDaoSpy, 2, Duration.ofMinutes(1), 10,
+                Duration.ofSeconds(1))) {
+            CompletableFuture<Integer> first = buffer.write(testDaoSpy.getDslContext().update(TEST_TABLE)
+                    .set(TEST_TABLE.NAME, "a")
+                    .where(TEST_TABLE.ID.eq(1L)));
+            CompletableFuture<Integer> second = buffer.write(testDaoSpy.getDslContext().update(TEST_TABLE)
+                    .set(TEST_TABLE.NAME, "b")
+                    .where(TEST_TABLE.ID.eq(2L)));
+            Assert.assertEquals(Integer.valueOf(1), first.get());
+            Assert.assertEquals(Integer.valueOf(0), second.get());
+        }
+        verify(namedParameterJdbcTemplateMock, times(1)).batchUpdate(anyString(), any(SqlParameterSource[].class));
+    }
+
+    @Test
+    public void failedBatchTest() throws Exception {
+        TestDao testDaoSpy = spy(new TestDao(mock(DataSource.class)));
+        NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplateMock.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                .thenThrow(new DataIntegrityViolationException("test"));
+        when(namedParameterJdbcTemplateMock.update(anyString(), any(SqlParameterSource.class)))
+                .thenReturn(1)
+                .thenThrow(new DataIntegrityViolationException("test"));
+        when(testDaoSpy.getNamedParameterJdbcTemplate()).thenReturn(namedParameterJdbcTemplateMock);
+
+        WriteBehindBuffer buffer = new WriteBehindBuffer(testDaoSpy, 10, Duration.ofMinutes(1), 10,
+                Duration.ofSeconds(1));
+        CompletableFuture<Integer> first = buffer.write(
+                testDaoSpy.getDslContext().insertInto(TEST_TABLE).set(TEST_TABLE.ID, 1L));
+        CompletableFuture<Integer> second = buffer.write(
+                testDaoSpy.getDslContext().insertInto(TEST_TABLE).set(TEST_TABLE.ID, 1L));
+        buffer.close();
+
+        Assert.assertEquals(Integer.valueOf(1), first.get());
+        try {
+            second.get();
+            Assert.fail();
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof DaoException);
+        }
+        try {
+            buffer.write(testDaoSpy.getDslContext().insertInto(TEST_TABLE).set(TEST_TABLE.ID, 2L));
+            Assert.fail();
+        } catch (DaoRejectedException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void retryFailedChunkOnlyTest() throws Exception {
+        TestDao testDaoSpy = spy(new TestDao(mock(DataSource.class)));
+        testDaoSpy.setMaxBatchSize(2);
+        NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplateMock.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{1, 1})
+                .thenThrow(new DataIntegrityViolationException("test"));
+        when(namedParameterJdbcTemplateMock.update(anyString(), any(SqlParameterSource.class))).thenReturn(1);
+        when(testDaoSpy.getNamedParameterJdbcTemplate()).thenReturn(namedParameterJdbcTemplateMock);
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        try (WriteBehindBuffer buffer = new WriteBehindBuffer(testDaoSpy, 10, Duration.ofMinutes(1), 10,
+                Duration.ofSeconds(1))) {
+            for (long id = 1; id <= 4; id++) {
+                futures.add(buffer.write(testDaoSpy.getDslContext().insertInto(TEST_TABLE).set(TEST_TABLE.ID, id)));
+            }
+        }
+
+        for (CompletableFuture<Integer> future : futures) {
+            Assert.assertEquals(Integer.valueOf(1), future.get());
+        }
+        verify(namedParameterJdbcTemplateMock, times(2)).batchUpdate(anyString(), any(SqlParameterSource[].class));
+        verify(namedParameterJdbcTemplateMock, times(2)).update(anyString(), any(SqlParameterSource.class));
+    }
+
+    @Test
+    public void timedOutBatchIsNotRetriedTest() throws Exception {
+        TestDao testDaoSpy = spy(new TestDao(mock(DataSource.class)));
+        NamedParameterJdbcTemplate namedParameterJdbcTemplateMock = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplateMock.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                .thenThrow(new QueryTimeoutException("test"));
+        when(testDaoSpy.getNamedParameterJdbcTemplate()).thenReturn(namedParameterJdbcTemplateMock);
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        try (WriteBehindBuffer buffer = new WriteBehindBuffer(testDaoSpy, 10, Duration.ofMinutes(1), 10,
+                Duration.ofSeconds(1))) {
+            for (long id = 1; id <= 2; id++) {
+                futures.add(buffer.write(testDaoSpy.getDslContext().insertInto(TEST_TABLE).set(TEST_TABLE.ID, id)));
+            }
+        }
+
+        for (CompletableFuture<Integer> future : futures) {
+            try {
+                future.get();
+                Assert.fail();
+            } catch (ExecutionException ex) {
+                Assert.assertTrue(ex.getCause().getCause() instanceof QueryTimeoutException);
+            }
+        }
+        verify(namedParameterJdbcTemplateMock, never()).update(anyString(), any(SqlParameterSource.class));
+    }
+
+    private static class TestDao extends AbstractGenericDao {
+
+        TestDao(DataSource dataSource) {
+            super(dataSource);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.rbkmoney.mapper;
+
+import com.rbkmoney.mapper.TestTable.TestEntity;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static com.rbkmoney.mapper.RecordRowMapperTest.resultSetMock;
+import static com.rbkmoney.mapper.TestTable.TEST_TABLE;
+import static org.mockito.Mockito.*;
+
+public class PojoRowMapperTest {
+
+    @Test
+    public void mapRowsTest() throws SQLException {
+        ResultSet resultSet = resultSetMock("payload", "id", "unknown", "name");
+        when(resultSet.getBytes(1)).thenReturn(new byte[]{1}, new byte[]{2});
+        when(resultSet.getObject(2, Long.class)).thenReturn(1L, 2L);
+        when(resultSet.getObject(4, String.class)).thenReturn("first", null);
+        when(resultSet.wasNull()).thenReturn(false, false, false, false, false, true);
+
+        PojoRowMapper<TestEntity> rowMapper = new PojoRowMapper<>(TEST_TABLE, TestEntity.class);
+        TestEntity first = rowMapper.mapRow(resultSet, 0);
+        TestEntity second = rowMapper.mapRow(resultSet, 1);
+
+        Assert.assertEquals(Long.valueOf(1L), first.getId());
+        Assert.assertEquals("first", first.getName());
+        Assert.assertArrayEquals(new byte[]{1}, first.getPayload());
+        Assert.assertEquals(Long.valueOf(2L), second.getId());
+        Assert.assertNull(second.getName());
+        Assert.assertArrayEquals(new byte[]{2}, second.getPayload());
+        verify(resultSet, times(1)).getMetaData();
+    }
+
+    @Test
+    public void sameResultAsRecordRowMapperTest() throws SQLException {
+        ResultSet resultSet = resultSetMock("id", "name");
+        when(resultSet.getObject(1, Long.class)).thenReturn(42L);
+        when(resultSet.getObject(2, String.class)).thenReturn("name");
+
+        TestEntity expected = new RecordRowMapper<>(TEST_TABLE, TestEntity.class).mapRow(resultSet, 0);
+        TestEntity actual = new PojoRowMapper<>(TEST_TABLE, TestEntity.class).mapRow(resultSet, 0);
+
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getName(), actual.getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noDefaultConstructorTest() {
+        new PojoRowMapper<>(TEST_TABLE, Integer.class);
+    }
+}
@@ -0,0 +1,92 @@
+package com.rbkmoney.mapper;
+
+import com.rbkmoney.mapper.TestTable.TestEntity;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import static com.rbkmoney.mapper.TestTable.TEST_TABLE;
+import static org.mockito.Mockito.*;
+
+public class RecordRowMapperTest {
+
+    @Test
+    public void mapRowsByColumnIndexTest() throws SQLException {
+        ResultSet resultSet = resultSetMock("id", "unknown", "name", "payload");
+        when(resultSet.getObject(1, Long.class)).thenReturn(1L, 2L);
+        when(resultSet.getObject(3, String.class)).thenReturn("first", "second");
+        when(resultSet.getBytes(4)).thenReturn(new byte[]{1}, new byte[]{2});
+
+        RecordRowMapper<TestEntity> rowMapper = new RecordRowMapper<>(TEST_TABLE, TestEntity.class);
+        TestEntity first = rowMapper.mapRow(resultSet, 0);
+        TestEntity second = rowMapper.mapRow(resultSet, 1);
+
+        Assert.assertEquals(Long.valueOf(1L), first.getId());
+        Assert.assertEquals("first", first.getName());
+        Assert.assertArrayEquals(new byte[]{1}, first.getPayload());
+        Assert.assertEquals(Long.valueOf(2L), second.getId());
+        Assert.assertEquals("second", second.getName());
+        Assert.assertArrayEquals(new byte[]{2}, second.getPayload());
+
+        verify(resultSet, times(1)).getMetaData();
+        verify(resultSet, never()).getObject(eq(2), any(Class.class));
+        verify(resultSet, never()).getObject(anyString(), any(Class.class));
+    }
+
+    @Test
+    public void mapRowWithDuplicateColumnsTest() throws SQLException {
+        ResultSet resultSet = resultSetMock("id", "name", "id", "name");
+        when(resultSet.getObject(1, Long.class)).thenReturn(1L);
+        when(resultSet.getObject(2, String.class)).thenReturn("first");
+
+        TestEntity entity = new RecordRowMapper<>(TEST_TABLE, TestEntity.class).mapRow(resultSet, 0);
+
+        Assert.assertEquals(Long.valueOf(1L), entity.getId());
+        Assert.assertEquals("first", entity.getName());
+        verify(resultSet, never()).getObject(eq(3), any(Class.class));
+        verify(resultSet, never()).getObject(eq(4), any(Class.class));
+    }
+
+    @Test
+    public void mapRowSkipsNullValuesTest() throws SQLException {
+        ResultSet resultSet = resultSetMock("id", "name");
+        when(resultSet.getObject(1, Long.class)).thenReturn(1L);
+        when(resultSet.wasNull()).thenReturn(false, true);
+
+        TestEntity entity = new RecordRowMapper<>(TEST_TABLE, TestEntity.class).mapRow(resultSet, 0);
+
+        Assert.assertEquals(Long.valueOf(1L), entity.getId());
+        Assert.assertNull(entity.getName());
+    }
+
+    @Test
+    public void mapRowWithBinaryDecoderTest() throws SQLException {
+        ResultSet resultSet = resultSetMock("id", "payload");
+        when(resultSet.getObject(1, Long.class)).thenReturn(1L);
+        when(resultSet.getBinaryStream(2)).thenReturn(new ByteArrayInputStream(new byte[]{3, 4}));
+
+        RecordRowMapper<TestEntity> rowMapper = new RecordRowMapper<>(TEST_TABLE, TestEntity.class);
+        rowMapper.setBinaryDecoder(TEST_TABLE.PAYLOAD, (input, entity) -> entity.setName("size " + input.available()));
+        TestEntity entity = rowMapper.mapRow(resultSet, 0);
+
+        Assert.assertEquals(Long.valueOf(1L), entity.getId());
+        Assert.assertEquals("size 2", entity.getName());
+        Assert.assertNull(entity.getPayload());
+        verify(resultSet, never()).getBytes(anyInt());
+    }
+
+    static ResultSet resultSetMock(String... columnNames) throws SQLException {
+        ResultSetMetaData rsMetaData = mock(ResultSetMetaData.class);
+        when(rsMetaData.getColumnCount()).thenReturn(columnNames.length);
+        for (int column = 1; column <= columnNames.length; column++) {
+            when(rsMetaData.getColumnName(column)).thenReturn(columnNames[column - 1]);
+        }
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getMetaData()).thenReturn(rsMetaData);
+        return resultSet;
+    }
+}
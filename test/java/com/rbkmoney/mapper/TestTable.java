@@ -0,0 +1,77 @@
+package com.rbkmoney.mapper;
+
+import org.jooq.Name;
+import org.jooq.TableField;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.jooq.impl.TableImpl;
+import org.jooq.impl.TableRecordImpl;
+
+public class TestTable extends TableImpl<TestTable.TestRecord> {
+
+    public static final TestTable TEST_TABLE = new TestTable();
+
+    public final TableField<TestRecord, Long> ID = createField(DSL.name("id"), SQLDataType.BIGINT, this);
+
+    public final TableField<TestRecord, String> NAME = createField(DSL.name("name"), SQLDataType.VARCHAR, this);
+
+    public final TableField<TestRecord, byte[]> PAYLOAD = createField(DSL.name("payload"), SQLDataType.BLOB, this);
+
+    private TestTable() {
+        super(DSL.name("test_table"));
+    }
+
+    private TestTable(Name alias, TestTable aliased) {
+        super(alias, null, aliased);
+    }
+
+    @Override
+    public TestTable as(String alias) {
+        return new TestTable(DSL.name(alias), this);
+    }
+
+    @Override
+    public Class<TestRecord> getRecordType() {
+        return TestRecord.class;
+    }
+
+    public static class TestRecord extends TableRecordImpl<TestRecord> {
+
+        public TestRecord() {
+            super(TEST_TABLE);
+        }
+    }
+
+    public static class TestEntity {
+
+        private Long id;
+
+        private String name;
+
+        private byte[] payload;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        public void setPayload(byte[] payload) {
+            this.payload = payload;
+        }
+    }
+}